@@ -0,0 +1,75 @@
+package com.aliloginmod;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latência da consulta ao filtro de senhas vazadas mapeado em memória, para senhas presentes e
+ * ausentes da lista. Executar com {@code ./gradlew jmh -Pjmh=BreachedPasswordFilter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BreachedPasswordFilterBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({"1000000"})
+    public int passwords;
+
+    private Path dir;
+    private BreachedPasswordFilter filter;
+    private String[] present;
+    private String[] absent;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("aliloginmod-bloom");
+        Path list = dir.resolve("senhas.txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(list, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < passwords; i++) {
+                writer.write("senha" + i);
+                writer.newLine();
+            }
+        }
+        Path compiled = dir.resolve("senhas.bloom");
+        BreachedPasswordFilter.compile(list, compiled, 0.001);
+        filter = BreachedPasswordFilter.open(compiled);
+
+        present = new String[SAMPLES];
+        absent = new String[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            present[i] = "senha" + (i * 7919 % passwords);
+            absent[i] = "Outra#" + i + "x";
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public boolean lookupPresent() {
+        return filter.mightContain(present[next++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public boolean lookupAbsent() {
+        return filter.mightContain(absent[next++ & (SAMPLES - 1)]);
+    }
+}
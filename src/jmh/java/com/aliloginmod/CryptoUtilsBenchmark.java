@@ -0,0 +1,70 @@
+package com.aliloginmod;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara o SHA-256 em hexadecimal antigo (MessageDigest.getInstance a cada chamada e
+ * Integer.toHexString) com {@link CryptoUtils}. Para ver os bytes alocados por operação:
+ * {@code ./gradlew jmh -Pjmh="CryptoUtils -prof gc"}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoUtilsBenchmark {
+    private String handshake;
+    private String expectedHex;
+    private String receivedHex;
+    private byte[] key;
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        handshake = "player123".toLowerCase(Locale.ROOT) + ":" + 1_700_000_000_000L + ":segredo-compartilhado";
+        expectedHex = CryptoUtils.sha256Hex(handshake);
+        receivedHex = expectedHex.substring(0, 63) + '0';
+        key = "segredo-compartilhado".getBytes(StandardCharsets.UTF_8);
+        data = handshake.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String sha256HexLegacy() throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hash = digest.digest(handshake.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash) {
+            String h = Integer.toHexString(0xff & b);
+            if (h.length() == 1) hex.append('0');
+            hex.append(h);
+        }
+        return hex.toString();
+    }
+
+    @Benchmark
+    public String sha256HexPooled() {
+        return CryptoUtils.sha256Hex(handshake);
+    }
+
+    @Benchmark
+    public byte[] hmacSha256Pooled() {
+        return CryptoUtils.hmacSha256(key, data);
+    }
+
+    @Benchmark
+    public boolean compareHexConstantTime() {
+        return CryptoUtils.constantTimeEquals(expectedHex, receivedHex);
+    }
+
+    @Benchmark
+    public byte[] fromHex() {
+        return CryptoUtils.fromHex(expectedHex);
+    }
+}
@@ -0,0 +1,88 @@
+package com.aliloginmod;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara a serialização das contas por reflexão (formato antigo, com indentação) com os
+ * adaptadores de {@link UserDataAdapters}. Executar com {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserDataSerializationBenchmark {
+    private static final Type USERS_TYPE = new TypeToken<Map<String, UserDataManager.UserData>>() {}.getType();
+
+    @Param({"100000"})
+    public int users;
+
+    private Map<String, UserDataManager.UserData> data;
+    private Gson reflectivePretty;
+    private Gson reflectiveCompact;
+    private Gson adapterCompact;
+    private Gson adapterPretty;
+    private String reflectiveJson;
+    private String compactJson;
+
+    @Setup
+    public void setup() {
+        data = new HashMap<>();
+        for (int i = 0; i < users; i++) {
+            String name = "Player" + i;
+            UserDataManager.PlayerPosition position = i % 4 == 0 ? null
+                    : new UserDataManager.PlayerPosition(i * 1.5, 64, -i * 0.25, i % 360, 0, "minecraft:overworld");
+            data.put(name.toLowerCase(), new UserDataManager.UserData(name,
+                    "5e884898da28047151d0e56f8dc6292773603d0d6aabbdd62a11ef721d1542d8",
+                    1_700_000_000_000L + i, 1_700_000_500_000L + i, position));
+        }
+
+        reflectivePretty = new GsonBuilder().setPrettyPrinting().create();
+        reflectiveCompact = new Gson();
+        adapterCompact = UserDataAdapters.createGson(false);
+        adapterPretty = UserDataAdapters.createGson(true);
+        reflectiveJson = reflectivePretty.toJson(data);
+        compactJson = adapterCompact.toJson(data);
+    }
+
+    @Benchmark
+    public void writeReflectivePretty() {
+        reflectivePretty.toJson(data, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public void writeReflectiveCompact() {
+        reflectiveCompact.toJson(data, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public void writeAdapterCompact() {
+        adapterCompact.toJson(data, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public void writeAdapterPretty() {
+        adapterPretty.toJson(data, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public Object readReflective() {
+        return reflectivePretty.fromJson(new StringReader(reflectiveJson), USERS_TYPE);
+    }
+
+    @Benchmark
+    public Object readAdapter() {
+        return adapterCompact.fromJson(new StringReader(compactJson), USERS_TYPE);
+    }
+}
@@ -3,6 +3,7 @@ package com.aliloginmod;
 import com.mojang.logging.LogUtils;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.server.ServerAboutToStartEvent;
 import net.minecraftforge.event.server.ServerStartingEvent;
 import net.minecraftforge.eventbus.api.IEventBus;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
@@ -11,6 +12,7 @@ import net.minecraftforge.fml.ModLoadingContext;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.config.ModConfig;
 import net.minecraftforge.fml.event.lifecycle.FMLCommonSetupEvent;
+import net.minecraftforge.fml.event.lifecycle.FMLDedicatedServerSetupEvent;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 import org.slf4j.Logger;
 
@@ -23,6 +25,7 @@ public class AliLoginMod {
         IEventBus modEventBus = FMLJavaModLoadingContext.get().getModEventBus();
         
         modEventBus.addListener(this::commonSetup);
+        modEventBus.addListener(this::dedicatedServerSetup);
         
         MinecraftForge.EVENT_BUS.register(this);
         MinecraftForge.EVENT_BUS.register(PlayerRestrictionHandler.class);
@@ -39,14 +42,31 @@ public class AliLoginMod {
     }
     
     private void commonSetup(final FMLCommonSetupEvent event) {
-        UserDataManager.loadUserData();
         NetworkHandler.register();
         LOGGER.info("AliLoginMod inicializado com sucesso!");
     }
     
+    /**
+     * Servidor dedicado: começa a carregar os usuários o quanto antes, em paralelo com o resto da inicialização
+     */
+    private void dedicatedServerSetup(final FMLDedicatedServerSetupEvent event) {
+        UserDataManager.preloadUserData();
+    }
+    
+    /**
+     * Servidor integrado (ou dedicado, se ainda não começou): carrega em paralelo com o mundo
+     */
+    @SubscribeEvent
+    public void onServerAboutToStart(ServerAboutToStartEvent event) {
+        UserDataManager.preloadUserData();
+    }
+    
     @SubscribeEvent
     public void onServerStarting(ServerStartingEvent event) {
-        
+        UserDataManager.preloadUserData();
+        UserDataManager.awaitUserData();
+        UserDataManager.startBackgroundSaving();
+        BreachedPasswordFilter.load(Config.breachedPasswordFilter);
         LOGGER.info("Servidor iniciado com sucesso!");
     }
 
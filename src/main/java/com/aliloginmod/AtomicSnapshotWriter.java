@@ -0,0 +1,192 @@
+package com.aliloginmod;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Grava snapshots de forma segura contra quedas: o conteúdo vai para um arquivo
+ * temporário no mesmo diretório, é forçado para o disco e só então renomeado
+ * atomicamente sobre o arquivo final. Antes da renomeação a geração anterior ganha
+ * um link (ou cópia) como backup, então o arquivo final nunca deixa de existir.
+ */
+public class AtomicSnapshotWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AtomicSnapshotWriter.class);
+
+    public static final String TMP_SUFFIX = ".tmp";
+    public static final String BACKUP_SUFFIX = ".bak";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @FunctionalInterface
+    public interface SnapshotBody {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface SnapshotParser<T> {
+        T parse(InputStream in) throws IOException;
+    }
+
+    /**
+     * Grava um novo snapshot no arquivo de destino
+     */
+    public static void write(Path target, SnapshotBody body) throws IOException {
+        Path tmp = sibling(target, TMP_SUFFIX);
+        Path backup = sibling(target, BACKUP_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            body.writeTo(out);
+            out.flush();
+            channel.force(true);
+        }
+
+        // Mantém a geração anterior como backup sem tirar o arquivo final do lugar
+        if (Files.exists(target)) {
+            linkOrCopy(target, backup);
+        }
+        move(tmp, target);
+        syncDirectory(target);
+    }
+
+    /**
+     * Verifica se existe alguma geração do snapshot em disco
+     */
+    public static boolean anyGenerationExists(Path target) {
+        return !generations(target).isEmpty();
+    }
+
+    /**
+     * Geração mais recente em disco, válida ou não; null se não houver nenhuma
+     */
+    public static Path newestGeneration(Path target) {
+        List<Path> existing = generations(target);
+        return existing.isEmpty() ? null : existing.get(0);
+    }
+
+    /**
+     * Geração lida: o arquivo de onde veio e o valor obtido
+     */
+    public record Generation<T>(Path path, T value) {
+    }
+
+    /**
+     * Lê a geração válida mais recente (arquivo final, temporário completo ou backup).
+     * Retorna null se nenhuma geração puder ser lida.
+     */
+    public static <T> T readNewestValid(Path target, SnapshotParser<T> parser) {
+        Generation<T> generation = readNewestValidGeneration(target, parser);
+        return generation == null ? null : generation.value();
+    }
+
+    /**
+     * Como {@link #readNewestValid}, informando também de qual geração o valor veio
+     */
+    public static <T> Generation<T> readNewestValidGeneration(Path target, SnapshotParser<T> parser) {
+        for (Path candidate : generations(target)) {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(candidate), BUFFER_SIZE)) {
+                T value = parser.parse(in);
+                if (value == null) {
+                    LOGGER.warn("Geração {} está vazia, ignorando", candidate);
+                    continue;
+                }
+                if (!candidate.equals(target)) {
+                    LOGGER.warn("Dados recuperados da geração {}", candidate);
+                }
+                return new Generation<>(candidate, value);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Geração {} inválida: {}", candidate, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copia o arquivo de destino para o lado, preservando dados que não puderam ser lidos
+     */
+    public static Path quarantine(Path target) {
+        if (!Files.exists(target)) {
+            return null;
+        }
+        Path copy = sibling(target, ".corrupt-" + System.currentTimeMillis());
+        try {
+            Files.copy(target, copy, StandardCopyOption.COPY_ATTRIBUTES);
+            return copy;
+        } catch (IOException e) {
+            LOGGER.error("Erro ao preservar arquivo corrompido {}: ", target, e);
+            return null;
+        }
+    }
+
+    public static Path sibling(Path target, String suffix) {
+        return target.resolveSibling(target.getFileName().toString() + suffix);
+    }
+
+    /**
+     * Lista as gerações existentes, da mais recente para a mais antiga
+     */
+    private static List<Path> generations(Path target) {
+        List<Path> existing = new ArrayList<>();
+        for (Path candidate : List.of(target, sibling(target, TMP_SUFFIX), sibling(target, BACKUP_SUFFIX))) {
+            if (Files.isRegularFile(candidate)) {
+                existing.add(candidate);
+            }
+        }
+        // Ordenação estável: em caso de empate o arquivo final vem primeiro
+        existing.sort(Comparator.comparingLong(AtomicSnapshotWriter::lastModified).reversed());
+        return existing;
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Link físico quando o sistema de arquivos permite; senão cópia com a mesma data de
+     * modificação, para o backup continuar mais antigo que a nova geração
+     */
+    private static void linkOrCopy(Path from, Path to) throws IOException {
+        Files.deleteIfExists(to);
+        try {
+            Files.createLink(to, from);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Força a renomeação para o disco (não suportado em todos os sistemas, ex.: Windows)
+     */
+    private static void syncDirectory(Path target) {
+        Path dir = target.toAbsolutePath().getParent();
+        if (dir == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.trace("Sincronização do diretório {} não suportada: {}", dir, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.aliloginmod;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Threads dedicadas ao hash de senhas, para que o custo do PBKDF2 não pare a thread do servidor.
+ *
+ * A fila é limitada: com ela cheia o pedido é recusado na hora ({@link RejectedExecutionException})
+ * em vez de acumular trabalho sem fim durante uma enxurrada de logins. A latência de cada pedido
+ * (espera na fila + hash) fica em uma janela circular para o cálculo dos percentis.
+ */
+public class AuthWorkerPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuthWorkerPool.class);
+
+    // Quantidade de latências recentes usadas nos percentis
+    private static final int LATENCY_WINDOW = 1024;
+
+    private volatile ThreadPoolExecutor executor;
+
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private int latencyNext;
+    private int latencyCount;
+
+    // Métricas
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile long maxLatencyNanos;
+
+    /**
+     * Cria as threads de autenticação (idempotente)
+     */
+    public synchronized void start(int threads, int queueSize) {
+        if (executor != null) {
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "aliloginmod-auth-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        LOGGER.info("Autenticação em {} threads (fila de {} pedidos)", threads, queueSize);
+    }
+
+    /**
+     * Executa a tarefa em uma thread de autenticação. O resultado falha com
+     * {@link RejectedExecutionException} se a fila estiver cheia.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        ThreadPoolExecutor current = executor;
+        if (current == null) {
+            start(Config.authWorkerThreads, Config.authQueueSize);
+            current = executor;
+        }
+
+        long submittedAt = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            current.execute(() -> {
+                try {
+                    result.complete(task.get());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                } finally {
+                    recordLatency(System.nanoTime() - submittedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Executa uma tarefa de manutenção (ex.: calibração) sem contar nas métricas de latência
+     */
+    public void execute(Runnable task) {
+        ThreadPoolExecutor current = executor;
+        if (current == null) {
+            start(Config.authWorkerThreads, Config.authQueueSize);
+            current = executor;
+        }
+        current.execute(task);
+    }
+
+    /**
+     * Para as threads, terminando os pedidos já aceitos
+     */
+    public synchronized void shutdown() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+    }
+
+    private void recordLatency(long nanos) {
+        completed.incrementAndGet();
+        if (nanos > maxLatencyNanos) {
+            maxLatencyNanos = nanos;
+        }
+        synchronized (latencies) {
+            latencies[latencyNext] = nanos;
+            latencyNext = (latencyNext + 1) % LATENCY_WINDOW;
+            latencyCount = Math.min(latencyCount + 1, LATENCY_WINDOW);
+        }
+    }
+
+    /**
+     * Adiciona as métricas de autenticação ao mapa de estatísticas
+     */
+    public void appendStats(Map<String, Object> stats) {
+        long[] window;
+        synchronized (latencies) {
+            window = Arrays.copyOf(latencies, latencyCount);
+        }
+        Arrays.sort(window);
+
+        ThreadPoolExecutor current = executor;
+        stats.put("authQueueDepth", current != null ? current.getQueue().size() : 0);
+        stats.put("authActiveWorkers", current != null ? current.getActiveCount() : 0);
+        stats.put("authCompleted", completed.get());
+        stats.put("authRejected", rejected.get());
+        stats.put("authLatencyP50Millis", percentile(window, 0.50));
+        stats.put("authLatencyP95Millis", percentile(window, 0.95));
+        stats.put("authLatencyP99Millis", percentile(window, 0.99));
+        stats.put("authLatencyMaxMillis", maxLatencyNanos / 1_000_000.0);
+        stats.put("authKdfIterations", PasswordHasher.iterations());
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+}
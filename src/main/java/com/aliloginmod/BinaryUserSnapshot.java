@@ -0,0 +1,444 @@
+package com.aliloginmod;
+
+import com.google.gson.Gson;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Formato binário versionado do snapshot de usuários.
+ *
+ * <pre>
+ * cabeçalho: MAGIC (8 bytes) | versão (1 byte)
+ * registro:  flags (1 byte) | nome | [chave] | hash | registro (varlong) | último login (varlong)
+ *            | [x y z (double) | yaw pitch (float) | dimensão (índice varint)]
+ * fim:       FLAG_END | CRC32 de todos os bytes anteriores (4 bytes)
+ * </pre>
+ *
+ * Textos são gravados como tamanho (varint) + UTF-8. Hashes hexadecimais são gravados como bytes
+ * brutos e hashes PBKDF2 como iterações (varint), sal e hash brutos. As dimensões formam uma
+ * tabela de textos construída durante a escrita: um índice igual ao tamanho atual da tabela
+ * indica uma dimensão nova, gravada em seguida. O índice 0 é reservado para posição sem dimensão
+ * e a tabela começa em 1.
+ */
+public class BinaryUserSnapshot {
+    private static final long MAGIC = 0x414C495553455253L; // "ALIUSERS"
+    private static final int VERSION = 1;
+    private static final int NULL_DIMENSION = 0;
+
+    private static final int FLAG_HAS_POSITION = 1;
+    private static final int FLAG_KEY_DIFFERS = 2;
+    private static final int FLAG_RAW_HASH = 4;
+    private static final int FLAG_PBKDF2_HASH = 8;
+    private static final int FLAG_END = 0x80;
+
+    /**
+     * Grava todas as contas do mapa no formato binário
+     */
+    public static void write(Map<String, UserDataManager.UserData> users, OutputStream out) throws IOException {
+        CRC32 crc = new CRC32();
+        // O buffer fica antes do CRC para que ele seja calculado em blocos
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(out, crc)));
+        Map<String, Integer> dimensions = new HashMap<>();
+
+        data.writeLong(MAGIC);
+        data.writeByte(VERSION);
+
+        for (Map.Entry<String, UserDataManager.UserData> entry : users.entrySet()) {
+            String key = entry.getKey();
+            UserDataManager.UserData user = entry.getValue();
+            UserDataManager.PlayerPosition position = user.lastPosition;
+            byte[] rawHash = hexToBytes(user.passwordHash);
+            Pbkdf2Hash pbkdf2 = rawHash == null ? Pbkdf2Hash.parse(user.passwordHash) : null;
+
+            int flags = 0;
+            if (position != null) {
+                flags |= FLAG_HAS_POSITION;
+            }
+            if (!key.equals(UserStore.key(user.username))) {
+                flags |= FLAG_KEY_DIFFERS;
+            }
+            if (rawHash != null) {
+                flags |= FLAG_RAW_HASH;
+            }
+            if (pbkdf2 != null) {
+                flags |= FLAG_PBKDF2_HASH;
+            }
+
+            data.writeByte(flags);
+            writeString(data, user.username);
+            if ((flags & FLAG_KEY_DIFFERS) != 0) {
+                writeString(data, key);
+            }
+            if (rawHash != null) {
+                writeVarLong(data, rawHash.length);
+                data.write(rawHash);
+            } else if (pbkdf2 != null) {
+                writeVarLong(data, pbkdf2.iterations());
+                writeVarLong(data, pbkdf2.salt().length);
+                data.write(pbkdf2.salt());
+                writeVarLong(data, pbkdf2.hash().length);
+                data.write(pbkdf2.hash());
+            } else {
+                writeString(data, user.passwordHash);
+            }
+            writeVarLong(data, user.registrationDate);
+            writeVarLong(data, user.lastLogin);
+
+            if (position != null) {
+                data.writeDouble(position.x);
+                data.writeDouble(position.y);
+                data.writeDouble(position.z);
+                data.writeFloat(position.yaw);
+                data.writeFloat(position.pitch);
+                if (position.dimension == null) {
+                    writeVarLong(data, NULL_DIMENSION);
+                } else {
+                    Integer index = dimensions.get(position.dimension);
+                    if (index != null) {
+                        writeVarLong(data, index);
+                    } else {
+                        // A tabela começa depois do índice reservado
+                        writeVarLong(data, dimensions.size() + 1);
+                        writeString(data, position.dimension);
+                        dimensions.put(position.dimension, dimensions.size() + 1);
+                    }
+                }
+            }
+        }
+
+        data.writeByte(FLAG_END);
+        data.flush();
+        // O CRC não inclui a si mesmo
+        DataOutputStream trailer = new DataOutputStream(out);
+        trailer.writeInt((int) crc.getValue());
+        trailer.flush();
+    }
+
+    /**
+     * Lê as contas do formato binário para o mapa de destino. Retorna a quantidade lida.
+     */
+    public static long read(InputStream in, Map<String, UserDataManager.UserData> target) throws IOException {
+        return read(new Input(in), target);
+    }
+
+    /**
+     * Ponto em que a leitura tolerante parou: posição (em bytes) do registro com erro e o motivo
+     */
+    public record Damage(long offset, String reason) {
+    }
+
+    /**
+     * Leitura tolerante: mantém no mapa todas as contas decodificadas antes do primeiro erro.
+     * Como os registros não têm marcas de sincronização, tudo a partir do registro com erro é perdido.
+     * Retorna null se o arquivo estiver íntegro.
+     */
+    public static Damage salvage(InputStream in, Map<String, UserDataManager.UserData> target) {
+        Input data = new Input(in);
+        try {
+            read(data, target);
+            return null;
+        } catch (IOException | RuntimeException e) {
+            return new Damage(data.recordStart, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    private static long read(Input data, Map<String, UserDataManager.UserData> target) throws IOException {
+        List<String> dimensions = new ArrayList<>();
+
+        if (data.readLong() != MAGIC) {
+            throw new IOException("Arquivo não é um snapshot binário de usuários");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Versão de snapshot binário não suportada: " + version);
+        }
+        // Ocupa o índice reservado: a tabela passa a começar em 1
+        dimensions.add(null);
+
+        long count = 0;
+        while (true) {
+            data.recordStart = data.offset();
+            int flags = data.readUnsignedByte();
+            if ((flags & FLAG_END) != 0) {
+                break;
+            }
+
+            String username = data.readString();
+            String key = (flags & FLAG_KEY_DIFFERS) != 0 ? data.readString() : UserStore.key(username);
+            String passwordHash;
+            if ((flags & FLAG_RAW_HASH) != 0) {
+                byte[] rawHash = new byte[checkedLength(data.readVarLong())];
+                data.readFully(rawHash);
+                passwordHash = bytesToHex(rawHash);
+            } else if ((flags & FLAG_PBKDF2_HASH) != 0) {
+                long iterations = data.readVarLong();
+                if (iterations <= 0 || iterations > Integer.MAX_VALUE) {
+                    throw new IOException("Iterações inválidas no hash: " + iterations);
+                }
+                byte[] salt = new byte[checkedLength(data.readVarLong())];
+                data.readFully(salt);
+                byte[] hash = new byte[checkedLength(data.readVarLong())];
+                data.readFully(hash);
+                passwordHash = new Pbkdf2Hash((int) iterations, salt, hash).format();
+            } else {
+                passwordHash = data.readString();
+            }
+
+            long registrationDate = data.readVarLong();
+            long lastLogin = data.readVarLong();
+            UserDataManager.PlayerPosition lastPosition = null;
+
+            if ((flags & FLAG_HAS_POSITION) != 0) {
+                double x = Double.longBitsToDouble(data.readLong());
+                double y = Double.longBitsToDouble(data.readLong());
+                double z = Double.longBitsToDouble(data.readLong());
+                float yaw = Float.intBitsToFloat(data.readInt());
+                float pitch = Float.intBitsToFloat(data.readInt());
+                int index = checkedLength(data.readVarLong());
+                if (index == dimensions.size()) {
+                    dimensions.add(data.readString());
+                } else if (index > dimensions.size()) {
+                    throw new IOException("Índice de dimensão inválido: " + index);
+                }
+                lastPosition = new UserDataManager.PlayerPosition(x, y, z, yaw, pitch, dimensions.get(index));
+            }
+
+            target.put(key, new UserDataManager.UserData(username, passwordHash, registrationDate, lastLogin, lastPosition));
+            count++;
+        }
+
+        int expected = data.checksum();
+        if (data.readInt() != expected) {
+            throw new IOException("CRC do snapshot binário não confere");
+        }
+        return count;
+    }
+
+    /**
+     * Ferramenta de linha de comando: converte entre o JSON e o formato binário.
+     * Uso: {@code migrate <entrada.json> <saida.dat>} ou {@code export <entrada.dat> <saida.json>}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !(args[0].equals("migrate") || args[0].equals("export"))) {
+            System.err.println("Uso: migrate <entrada.json> <saida.dat> | export <entrada.dat> <saida.json>");
+            System.exit(2);
+            return;
+        }
+
+        Gson gson = UserDataAdapters.createGson(true);
+        Path source = Paths.get(args[1]);
+        Path target = Paths.get(args[2]);
+        Map<String, UserDataManager.UserData> users = new LinkedHashMap<>();
+        long start = System.nanoTime();
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(source))) {
+            if (args[0].equals("migrate")) {
+                StreamingUserLoader.load(new InputStreamReader(in, StandardCharsets.UTF_8), users, gson, Files.size(source));
+            } else {
+                read(in, users);
+            }
+        }
+
+        if (args[0].equals("migrate")) {
+            AtomicSnapshotWriter.write(target, out -> write(users, out));
+        } else {
+            AtomicSnapshotWriter.write(target, out -> {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                gson.toJson(users, writer);
+                writer.flush();
+            });
+        }
+
+        System.out.printf(Locale.ROOT, "%d contas convertidas em %d ms: %s (%d bytes) -> %s (%d bytes)%n",
+                users.size(), (System.nanoTime() - start) / 1_000_000,
+                source, Files.size(source), target, Files.size(target));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Inteiro sem sinal com 7 bits por byte (bit mais alto indica continuação)
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static int checkedLength(long length) throws IOException {
+        if (length < 0 || length > 1 << 20) {
+            throw new IOException("Tamanho inválido no snapshot binário: " + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * Converte um hash em hexadecimal minúsculo para bytes; null se o texto não for hexadecimal
+     */
+    private static byte[] hexToBytes(String hex) {
+        if (hex == null || hex.isEmpty() || (hex.length() & 1) != 0) {
+            return null;
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            // Maiúsculas não voltariam iguais na leitura
+            if (high < 0 || low < 0 || Character.isUpperCase(hex.charAt(2 * i)) || Character.isUpperCase(hex.charAt(2 * i + 1))) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    /**
+     * Partes de um hash {@code pbkdf2-sha256$<iterações>$<sal>$<hash>} do {@link PasswordHasher}
+     */
+    private record Pbkdf2Hash(int iterations, byte[] salt, byte[] hash) {
+        private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+        private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+        /**
+         * Separa as partes do hash; null se o texto não voltar idêntico ao ser remontado
+         * (outro formato, zeros à esquerda, Base64 com preenchimento etc.)
+         */
+        static Pbkdf2Hash parse(String stored) {
+            if (stored == null || !stored.startsWith(PasswordHasher.PREFIX)) {
+                return null;
+            }
+            String[] parts = stored.split("\\$", -1);
+            if (parts.length != 4) {
+                return null;
+            }
+            try {
+                Pbkdf2Hash parsed = new Pbkdf2Hash(Integer.parseInt(parts[1]), DECODER.decode(parts[2]), DECODER.decode(parts[3]));
+                return parsed.iterations() > 0 && parsed.format().equals(stored) ? parsed : null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        String format() {
+            return PasswordHasher.PREFIX + iterations + '$' + ENCODER.encodeToString(salt) + '$' + ENCODER.encodeToString(hash);
+        }
+    }
+
+    private static String bytesToHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            chars[2 * i + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Leitura com buffer próprio. O CRC cobre apenas os bytes já consumidos, então o
+     * trailer lido junto no mesmo bloco não entra no cálculo.
+     */
+    private static final class Input {
+        private final InputStream in;
+        private final byte[] buffer = new byte[64 * 1024];
+        private final CRC32 crc = new CRC32();
+        private int position;
+        private int limit;
+        // Início dos bytes consumidos que ainda não entraram no CRC
+        private int crcStart;
+        // Bytes consumidos em blocos anteriores do buffer
+        private long consumedBefore;
+        // Posição do registro sendo lido (usada para relatar onde a leitura falhou)
+        long recordStart;
+
+        Input(InputStream in) {
+            this.in = in;
+        }
+
+        long offset() {
+            return consumedBefore + position;
+        }
+
+        int checksum() {
+            crc.update(buffer, crcStart, position - crcStart);
+            crcStart = position;
+            return (int) crc.getValue();
+        }
+
+        int readUnsignedByte() throws IOException {
+            if (position == limit) {
+                fill();
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        int readInt() throws IOException {
+            return (readUnsignedByte() << 24) | (readUnsignedByte() << 16) | (readUnsignedByte() << 8) | readUnsignedByte();
+        }
+
+        long readLong() throws IOException {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Varint malformado");
+        }
+
+        String readString() throws IOException {
+            int length = checkedLength(readVarLong());
+            if (limit - position >= length) {
+                String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+                position += length;
+                return value;
+            }
+            byte[] bytes = new byte[length];
+            readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void readFully(byte[] target) throws IOException {
+            int copied = 0;
+            while (copied < target.length) {
+                if (position == limit) {
+                    fill();
+                }
+                int n = Math.min(target.length - copied, limit - position);
+                System.arraycopy(buffer, position, target, copied, n);
+                position += n;
+                copied += n;
+            }
+        }
+
+        private void fill() throws IOException {
+            crc.update(buffer, crcStart, position - crcStart);
+            consumedBefore += limit;
+            int n = in.read(buffer, 0, buffer.length);
+            if (n <= 0) {
+                throw new EOFException("Snapshot binário truncado");
+            }
+            position = 0;
+            limit = n;
+            crcStart = 0;
+        }
+    }
+}
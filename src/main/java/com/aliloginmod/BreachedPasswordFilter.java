@@ -0,0 +1,284 @@
+package com.aliloginmod;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Filtro de Bloom com senhas comuns ou vazadas, compilado uma vez a partir de uma lista em texto
+ * e mapeado em memória na inicialização.
+ *
+ * Verificar uma senha são poucas sondagens de bits no arquivo mapeado, sem alocar nada e sem
+ * rede. Pode haver falsos positivos na taxa escolhida ao compilar (a senha é recusada sem estar
+ * na lista), nunca falsos negativos. A senha é testada como digitada e em minúsculas.
+ * Compilação: {@code java -cp aliloginmod.jar com.aliloginmod.BreachedPasswordFilter <lista.txt> <saida.bloom> [taxa]}.
+ */
+public final class BreachedPasswordFilter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BreachedPasswordFilter.class);
+
+    private static final long MAGIC = 0x414C49424C4F4F4DL; // "ALIBLOOM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.001;
+    // Senhas fora do tamanho aceito pelos comandos nunca são testadas
+    private static final int MIN_LENGTH = 4;
+    private static final int MAX_LENGTH = 32;
+
+    private static volatile BreachedPasswordFilter current;
+
+    // Métricas
+    private static final AtomicLong checks = new AtomicLong();
+    private static final AtomicLong rejected = new AtomicLong();
+
+    private final ByteBuffer bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final long entries;
+
+    private BreachedPasswordFilter(ByteBuffer bits, long bitCount, int hashCount, long entries) {
+        this.bits = bits;
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+        this.entries = entries;
+    }
+
+    /**
+     * Mapeia o filtro do arquivo dado; sem arquivo (ou caminho vazio) a verificação fica desligada
+     */
+    public static void load(String file) {
+        if (file == null || file.isBlank()) {
+            current = null;
+            return;
+        }
+        Path path = Paths.get(file);
+        if (!Files.exists(path)) {
+            current = null;
+            LOGGER.info("Filtro de senhas vazadas {} não encontrado, verificação desativada", path);
+            return;
+        }
+        try {
+            current = open(path);
+            LOGGER.info("Filtro de senhas vazadas carregado: {} senhas, {} KB, {} hashes",
+                       current.entries, Files.size(path) / 1024, current.hashCount);
+        } catch (IOException e) {
+            current = null;
+            LOGGER.error("Não foi possível mapear o filtro de senhas vazadas {}", path, e);
+        }
+    }
+
+    /**
+     * Verifica se a senha está (provavelmente) na lista carregada
+     */
+    public static boolean isBreached(String password) {
+        BreachedPasswordFilter filter = current;
+        if (filter == null) {
+            return false;
+        }
+        checks.incrementAndGet();
+        boolean found = filter.mightContain(password);
+        if (found) {
+            rejected.incrementAndGet();
+        }
+        return found;
+    }
+
+    /**
+     * Abre um filtro compilado, mapeando o arquivo somente para leitura
+     */
+    public static BreachedPasswordFilter open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("tamanho inválido: " + size);
+            }
+            // O mapeamento continua válido depois de fechar o canal
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getLong(0) != MAGIC) {
+                throw new IOException("não é um filtro de senhas");
+            }
+            int version = buffer.getInt(8);
+            if (version != VERSION) {
+                throw new IOException("versão " + version + " não suportada");
+            }
+            int hashCount = buffer.getInt(12);
+            long bitCount = buffer.getLong(16);
+            long entries = buffer.getLong(24);
+            if (hashCount < 1 || bitCount < 64 || HEADER_SIZE + words(bitCount) * 8 != size) {
+                throw new IOException("cabeçalho inconsistente");
+            }
+            return new BreachedPasswordFilter(buffer, bitCount, hashCount, entries);
+        }
+    }
+
+    /**
+     * Testa a senha como digitada e em minúsculas
+     */
+    public boolean mightContain(String password) {
+        if (password.length() < MIN_LENGTH || password.length() > MAX_LENGTH) {
+            return false;
+        }
+        long exact = hash(password, false);
+        long lower = hash(password, true);
+        return probe(exact) || (lower != exact && probe(lower));
+    }
+
+    private boolean probe(long hash) {
+        // Dois hashes derivados de um só (Kirsch-Mitzenmacher): h1 + i * h2
+        long h1 = mix(hash);
+        long h2 = mix(hash + 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            long word = bits.getLong(HEADER_SIZE + (int) (bit >>> 6) * 8);
+            if ((word & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * FNV-1a de 64 bits sobre os caracteres, sem criar o array de bytes
+     */
+    private static long hash(String password, boolean lowerCase) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < password.length(); i++) {
+            char c = password.charAt(i);
+            h = (h ^ (lowerCase ? Character.toLowerCase(c) : c)) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /**
+     * Finalizador do MurmurHash3: espalha os bits do FNV entre todas as posições
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE1A85EC9L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long words(long bitCount) {
+        return (bitCount + 63) >>> 6;
+    }
+
+    /**
+     * Compila a lista (uma senha por linha) em um filtro com a taxa de falsos positivos dada
+     */
+    public static long compile(Path list, Path target, double falsePositiveRate) throws IOException {
+        long count = 0;
+        try (BufferedReader reader = openList(list)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() >= MIN_LENGTH && line.length() <= MAX_LENGTH) {
+                    count++;
+                }
+            }
+        }
+
+        // Tamanho ótimo: m = -n ln p / (ln 2)^2 bits e k = m / n ln 2 hashes
+        long n = Math.max(1, count);
+        long bitCount = words(Math.max(64, (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))))) * 64;
+        if (HEADER_SIZE + words(bitCount) * 8 > Integer.MAX_VALUE) {
+            throw new IOException("lista grande demais para a taxa " + falsePositiveRate + " (máximo 2 GB)");
+        }
+        int hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        long[] words = new long[(int) words(bitCount)];
+
+        BreachedPasswordFilter builder = new BreachedPasswordFilter(null, bitCount, hashCount, count);
+        try (BufferedReader reader = openList(list)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() >= MIN_LENGTH && line.length() <= MAX_LENGTH) {
+                    builder.set(words, hash(line, false));
+                }
+            }
+        }
+
+        final long entries = count;
+        AtomicSnapshotWriter.write(target, out -> {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeLong(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(hashCount);
+            data.writeLong(bitCount);
+            data.writeLong(entries);
+            for (long word : words) {
+                data.writeLong(word);
+            }
+            data.flush();
+        });
+        return count;
+    }
+
+    /**
+     * Listas públicas misturam codificações: bytes inválidos em UTF-8 são trocados, não abortam a leitura
+     */
+    private static BufferedReader openList(Path list) throws IOException {
+        return new BufferedReader(new InputStreamReader(Files.newInputStream(list), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private void set(long[] words, long hash) {
+        long h1 = mix(hash);
+        long h2 = mix(hash + 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Adiciona as métricas do filtro ao mapa de estatísticas
+     */
+    public static void appendStats(Map<String, Object> stats) {
+        BreachedPasswordFilter filter = current;
+        stats.put("breachedFilterEntries", filter == null ? 0 : filter.entries);
+        stats.put("breachedFilterChecks", checks.get());
+        stats.put("breachedFilterRejected", rejected.get());
+    }
+
+    /**
+     * Ferramenta de linha de comando: compila a lista de senhas em um filtro.
+     * Uso: {@code <lista.txt> <saida.bloom> [taxa de falsos positivos, padrão 0.001]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Uso: <lista.txt> <saida.bloom> [taxa de falsos positivos, padrão 0.001]");
+            System.exit(2);
+            return;
+        }
+
+        Path source = Paths.get(args[0]);
+        Path target = Paths.get(args[1]);
+        double rate = args.length == 3 ? Double.parseDouble(args[2]) : DEFAULT_FALSE_POSITIVE_RATE;
+        if (!(rate > 0 && rate < 1)) {
+            System.err.println("A taxa de falsos positivos deve estar entre 0 e 1");
+            System.exit(2);
+            return;
+        }
+        long start = System.nanoTime();
+
+        long count = compile(source, target, rate);
+
+        System.out.printf(Locale.ROOT, "%d senhas compiladas em %d ms: %s (%d bytes) -> %s (%d bytes)%n",
+                count, (System.nanoTime() - start) / 1_000_000,
+                source, Files.size(source), target, Files.size(target));
+    }
+}
@@ -0,0 +1,147 @@
+package com.aliloginmod;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Assinatura e verificação do handshake de auto-login do cliente.
+ *
+ * A assinatura é um HMAC-SHA256 com a chave {@code sharedSecret} sobre nome, timestamp e um
+ * nonce aleatório por pacote. O servidor aceita cada nonce uma única vez dentro da janela de
+ * validade ({@link ReplayCache}), então um pacote capturado não pode ser reenviado.
+ */
+public final class BypassHandshake {
+    // Diferença máxima entre o relógio do cliente e o do servidor
+    public static final long WINDOW_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    // Granularidade da expiração do cache de nonces
+    private static final long BUCKET_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    // Nonces lembrados no máximo (~100 bytes cada)
+    private static final int MAX_NONCES = 65_536;
+    private static final int NONCE_BYTES = 16;
+
+    public enum Result {
+        ACCEPTED,
+        OUTDATED_CLIENT,
+        EXPIRED,
+        BAD_SIGNATURE,
+        REPLAYED,
+        CACHE_FULL
+    }
+
+    /**
+     * Chave derivada do segredo; recriada apenas quando o segredo muda (recarga da configuração)
+     */
+    private record Key(String secret, byte[] bytes) {
+    }
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ReplayCache NONCES = new ReplayCache(WINDOW_MILLIS, BUCKET_MILLIS, MAX_NONCES);
+    private static volatile Key key;
+
+    // Métricas
+    private static final AtomicLong[] results = new AtomicLong[Result.values().length];
+    private static final AtomicLong verifyNanos = new AtomicLong();
+    private static volatile long maxVerifyNanos;
+
+    static {
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new AtomicLong();
+        }
+    }
+
+    private BypassHandshake() {
+    }
+
+    /**
+     * Gera um nonce novo para um pacote
+     */
+    public static String newNonce() {
+        byte[] nonce = new byte[NONCE_BYTES];
+        RANDOM.nextBytes(nonce);
+        return CryptoUtils.toHex(nonce);
+    }
+
+    /**
+     * Assina o handshake (usado pelo cliente e, na verificação, pelo servidor)
+     */
+    public static String sign(String secret, String username, long timestamp, String nonce) {
+        String data = username.toLowerCase(Locale.ROOT) + ":" + timestamp + ":" + nonce;
+        return CryptoUtils.toHex(CryptoUtils.hmacSha256(keyFor(secret), data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Verifica o handshake recebido: timestamp na janela, assinatura e nonce ainda não usado
+     */
+    public static Result verify(String secret, String username, long timestamp, String nonce, String signature) {
+        long start = System.nanoTime();
+        Result result = check(secret, username, timestamp, nonce, signature);
+
+        long elapsed = System.nanoTime() - start;
+        verifyNanos.addAndGet(elapsed);
+        if (elapsed > maxVerifyNanos) {
+            maxVerifyNanos = elapsed;
+        }
+        results[result.ordinal()].incrementAndGet();
+        return result;
+    }
+
+    private static Result check(String secret, String username, long timestamp, String nonce, String signature) {
+        // Clientes antigos enviam o pacote sem nonce
+        if (nonce == null || nonce.length() != NONCE_BYTES * 2 || CryptoUtils.fromHex(nonce) == null) {
+            return Result.OUTDATED_CLIENT;
+        }
+
+        long now = System.currentTimeMillis();
+        if (Math.abs(now - timestamp) > WINDOW_MILLIS) {
+            return Result.EXPIRED;
+        }
+
+        if (!CryptoUtils.constantTimeEquals(sign(secret, username, timestamp, nonce), signature)) {
+            return Result.BAD_SIGNATURE;
+        }
+
+        // Só pacotes com assinatura válida entram no cache: pacotes forjados não o enchem
+        return switch (NONCES.register(nonce, timestamp, now)) {
+            case ACCEPTED -> Result.ACCEPTED;
+            case REPLAYED -> Result.REPLAYED;
+            case FULL -> Result.CACHE_FULL;
+        };
+    }
+
+    private static byte[] keyFor(String secret) {
+        Key current = key;
+        if (current == null || !current.secret().equals(secret)) {
+            current = new Key(secret, secret.getBytes(StandardCharsets.UTF_8));
+            key = current;
+        }
+        // Sempre o mesmo array para o mesmo segredo: o Mac de cada thread é iniciado uma vez
+        return current.bytes();
+    }
+
+    /**
+     * Adiciona as métricas do handshake ao mapa de estatísticas
+     */
+    public static void appendStats(Map<String, Object> stats) {
+        long total = 0;
+        for (Result result : Result.values()) {
+            long count = results[result.ordinal()].get();
+            total += count;
+            stats.put("handshake" + camelCase(result), count);
+        }
+        stats.put("handshakeAvgVerifyMicros", total == 0 ? 0.0 : verifyNanos.get() / 1_000.0 / total);
+        stats.put("handshakeMaxVerifyMicros", maxVerifyNanos / 1_000.0);
+        NONCES.appendStats(stats, "handshakeNonce");
+    }
+
+    private static String camelCase(Result result) {
+        StringBuilder name = new StringBuilder();
+        for (String part : result.name().split("_")) {
+            name.append(part.charAt(0)).append(part.substring(1).toLowerCase(Locale.ROOT));
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,137 @@
+package com.aliloginmod;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Mantém em memória as contas de um armazenamento com leitura pontual (mapeado ou SQL).
+ * No modo sob demanda só o índice do armazenamento é carregado na inicialização e as contas
+ * ficam em um LRU limitado; caso contrário todas as contas são carregadas de início.
+ * Os nomes registrados ficam sempre em memória, então verificar se uma conta existe nunca
+ * consulta o armazenamento.
+ */
+public class CachedUserStore implements UserStore {
+    private final UserStore backing;
+    private final boolean lazy;
+    private final UserCache cache;
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+    public CachedUserStore(UserStore backing, boolean lazy, int cacheSize) {
+        this.backing = backing;
+        this.lazy = lazy;
+        this.cache = new UserCache(lazy ? cacheSize : Integer.MAX_VALUE, backing::lookup);
+    }
+
+    @Override
+    public void load() throws IOException {
+        cache.clear();
+        keys.clear();
+        backing.load();
+        if (lazy) {
+            backing.forEachKey(keys::add);
+        } else {
+            backing.forEach((key, data) -> {
+                cache.put(key, data);
+                keys.add(key);
+            });
+        }
+    }
+
+    @Override
+    public boolean register(String key, UserDataManager.UserData data) throws IOException {
+        if (!backing.register(key, data)) {
+            return false;
+        }
+        keys.add(key);
+        cache.put(key, data);
+        return true;
+    }
+
+    @Override
+    public UserDataManager.UserData lookup(String key) {
+        return cache.get(key);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return keys.contains(key);
+    }
+
+    @Override
+    public String passwordHash(String key) {
+        // Autenticar não precisa carregar a conta inteira
+        UserDataManager.UserData cached = cache.getIfPresent(key);
+        return cached != null ? cached.passwordHash : backing.passwordHash(key);
+    }
+
+    @Override
+    public void updateLastLogin(String key, long lastLogin) {
+        backing.updateLastLogin(key, lastLogin);
+        cache.update(key, data -> data.withLastLogin(lastLogin));
+    }
+
+    @Override
+    public void updatePassword(String key, String passwordHash) {
+        backing.updatePassword(key, passwordHash);
+        cache.update(key, data -> data.withPasswordHash(passwordHash));
+    }
+
+    @Override
+    public void updatePosition(String key, UserDataManager.PlayerPosition position) {
+        backing.updatePosition(key, position);
+        cache.update(key, data -> data.withLastPosition(position));
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, UserDataManager.UserData> consumer) {
+        backing.forEach(consumer);
+    }
+
+    @Override
+    public int count() {
+        return backing.count();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        backing.flush();
+    }
+
+    @Override
+    public List<Path> copyPersistedFiles(Path directory) throws IOException {
+        return backing.copyPersistedFiles(directory);
+    }
+
+    @Override
+    public void start() throws IOException {
+        backing.start();
+    }
+
+    @Override
+    public void stop() {
+        backing.stop();
+    }
+
+    @Override
+    public void pin(String key) {
+        cache.pin(key);
+    }
+
+    @Override
+    public void unpin(String key) {
+        cache.unpin(key);
+    }
+
+    @Override
+    public void appendStats(Map<String, Object> stats) {
+        backing.appendStats(stats);
+        if (lazy) {
+            cache.appendStats(stats);
+        }
+    }
+}
@@ -8,10 +8,6 @@ import net.minecraftforge.fml.common.Mod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.util.Locale;
-
 @Mod.EventBusSubscriber(modid = AliLoginMod.MODID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.FORGE)
 public class ClientBypassSender {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClientBypassSender.class);
@@ -38,35 +34,13 @@ public class ClientBypassSender {
         try {
             long timestamp = System.currentTimeMillis();
             String playerName = Minecraft.getInstance().getUser().getName();
-            String signature = generateSignature(playerName, timestamp, ClientConfig.sharedSecret);
+            String nonce = BypassHandshake.newNonce();
+            String signature = BypassHandshake.sign(ClientConfig.sharedSecret, playerName, timestamp, nonce);
             
-            NetworkHandler.CHANNEL.sendToServer(new NetworkHandler.ClientBypassLoginMessage(timestamp, signature));
+            NetworkHandler.CHANNEL.sendToServer(new NetworkHandler.ClientBypassLoginMessage(timestamp, nonce, signature));
             LOGGER.info("AliLoginMod: handshake de auto-login enviado");
         } catch (Exception e) {
             LOGGER.error("AliLoginMod: erro ao enviar handshake de auto-login", e);
         }
     }
-    
-    // ← MÉTODO QUE ESTAVA FALTANDO
-    private static String generateSignature(String playerName, long timestamp, String sharedSecret) {
-        String data = playerName.toLowerCase(Locale.ROOT) + ":" + timestamp + ":" + sharedSecret;
-        return sha256Hex(data);
-    }
-
-    private static String sha256Hex(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hex = new StringBuilder();
-            for (byte b : hash) {
-                String h = Integer.toHexString(0xff & b);
-                if (h.length() == 1) hex.append('0');
-                hex.append(h);
-            }
-            return hex.toString();
-        } catch (Exception e) {
-            LOGGER.error("Erro SHA-256 no cliente: ", e);
-            return "";
-        }
-    }
 }
\ No newline at end of file
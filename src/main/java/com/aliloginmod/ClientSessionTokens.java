@@ -0,0 +1,104 @@
+package com.aliloginmod;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ServerData;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.loading.FMLPaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Guarda no cliente os tokens de sessão recebidos, um por endereço de servidor, e apresenta o
+ * token ao entrar de novo no mesmo servidor.
+ */
+@Mod.EventBusSubscriber(modid = AliLoginMod.MODID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public class ClientSessionTokens {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientSessionTokens.class);
+    private static final Gson GSON = new Gson();
+    private static final String FILE_NAME = "aliloginmod-session-tokens.json";
+
+    // Endereço do servidor (minúsculas) -> token; carregado na primeira utilização
+    private static Map<String, String> tokens;
+
+    @SubscribeEvent
+    public static void onPlayerLoggedIn(ClientPlayerNetworkEvent.LoggingIn event) {
+        String address = currentServerAddress();
+        if (address == null) {
+            return;
+        }
+        String token = tokens().get(address);
+        if (token != null) {
+            NetworkHandler.CHANNEL.sendToServer(new NetworkHandler.SessionTokenLoginMessage(token));
+            LOGGER.info("AliLoginMod: token de sessão enviado para {}", address);
+        }
+    }
+
+    /**
+     * Guarda o token recebido do servidor atual; um token vazio apaga o guardado
+     */
+    public static void store(String token) {
+        String address = currentServerAddress();
+        if (address == null) {
+            return;
+        }
+        Map<String, String> current = tokens();
+        boolean changed = token == null || token.isEmpty()
+                ? current.remove(address) != null
+                : !token.equals(current.put(address, token));
+        if (changed) {
+            save(current);
+        }
+    }
+
+    private static String currentServerAddress() {
+        ServerData server = Minecraft.getInstance().getCurrentServer();
+        // Mundo local (sem servidor) não precisa de token
+        return server == null || server.ip == null ? null : server.ip.toLowerCase(Locale.ROOT);
+    }
+
+    private static Path file() {
+        return FMLPaths.CONFIGDIR.get().resolve(FILE_NAME);
+    }
+
+    private static Map<String, String> tokens() {
+        if (tokens == null) {
+            tokens = new HashMap<>();
+            Path file = file();
+            if (Files.exists(file)) {
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    Map<String, String> loaded = GSON.fromJson(reader, new TypeToken<Map<String, String>>() {}.getType());
+                    if (loaded != null) {
+                        tokens.putAll(loaded);
+                    }
+                } catch (Exception e) {
+                    LOGGER.warn("AliLoginMod: não foi possível ler os tokens de sessão de {}", file, e);
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static void save(Map<String, String> current) {
+        Path file = file();
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            GSON.toJson(current, writer);
+        } catch (IOException e) {
+            LOGGER.error("AliLoginMod: erro ao gravar os tokens de sessão em {}", file, e);
+        }
+    }
+}
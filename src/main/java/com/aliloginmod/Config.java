@@ -8,6 +8,19 @@ import net.minecraftforge.fml.event.config.ModConfigEvent;
 // Configuração do AliLoginMod
 @Mod.EventBusSubscriber(modid = AliLoginMod.MODID, bus = Mod.EventBusSubscriber.Bus.MOD)
 public class Config {
+    // Onde as contas são armazenadas
+    public enum StorageBackend {
+        JSON,
+        MMAP,
+        SQL
+    }
+    
+    // Formato dos snapshots do armazenamento em arquivos
+    public enum SnapshotFormat {
+        JSON,
+        BINARY
+    }
+    
     private static final ForgeConfigSpec.Builder BUILDER = new ForgeConfigSpec.Builder();
     
     private static final ForgeConfigSpec.IntValue LOGIN_TIMEOUT = BUILDER
@@ -26,12 +39,192 @@ public class Config {
             .comment("Chave secreta compartilhada cliente/servidor para assinar o handshake (mantenha em segredo)")
             .define("sharedSecret", ""); // ← Está vazio!
     
+    private static final ForgeConfigSpec.BooleanValue WRITE_BEHIND = BUILDER
+            .comment("Grava os dados de usuários em segundo plano, agrupando várias alterações em uma única escrita (padrão: true)")
+            .define("writeBehind", true);
+    
+    private static final ForgeConfigSpec.IntValue FLUSH_INTERVAL_SECONDS = BUILDER
+            .comment("Segundos sem novas alterações antes de gravar os dados de usuários (padrão: 5)")
+            .defineInRange("flushIntervalSeconds", 5, 1, 300);
+    
+    private static final ForgeConfigSpec.IntValue MAX_DIRTY_AGE_SECONDS = BUILDER
+            .comment("Tempo máximo em segundos que uma alteração pode ficar sem ser gravada (padrão: 30)")
+            .defineInRange("maxDirtyAgeSeconds", 30, 1, 3600);
+    
+    private static final ForgeConfigSpec.BooleanValue JOURNAL_MODE = BUILDER
+            .comment("Grava cada alteração como um pequeno registro em um diário em vez de reescrever o arquivo inteiro (padrão: false)")
+            .define("journalMode", false);
+    
+    private static final ForgeConfigSpec.IntValue JOURNAL_COMPACT_SIZE_KB = BUILDER
+            .comment("Tamanho em KB do diário que dispara a compactação em um novo snapshot (padrão: 4096)")
+            .defineInRange("journalCompactSizeKb", 4096, 64, 1048576);
+    
+    private static final ForgeConfigSpec.IntValue JOURNAL_COMPACT_AGE_MINUTES = BUILDER
+            .comment("Idade máxima em minutos do diário antes da compactação (padrão: 60)")
+            .defineInRange("journalCompactAgeMinutes", 60, 1, 10080);
+    
+    private static final ForgeConfigSpec.IntValue SHARD_COUNT = BUILDER
+            .comment("Quantidade de arquivos (shards) em que os dados de usuários são divididos; 1 usa um arquivo único (padrão: 1)")
+            .defineInRange("shardCount", 1, 1, 256);
+    
+    private static final ForgeConfigSpec.EnumValue<SnapshotFormat> SNAPSHOT_FORMAT = BUILDER
+            .comment("Formato dos arquivos de dados (storageBackend = JSON): JSON (legível) ou BINARY (compacto e mais rápido); os dados são convertidos ao trocar (padrão: JSON)")
+            .defineEnum("snapshotFormat", SnapshotFormat.JSON);
+    
+    private static final ForgeConfigSpec.BooleanValue PRETTY_JSON = BUILDER
+            .comment("Grava os arquivos JSON com indentação (mais legíveis, porém maiores e mais lentos) (padrão: false)")
+            .define("prettyJson", false);
+    
+    private static final ForgeConfigSpec.EnumValue<StorageBackend> STORAGE_BACKEND = BUILDER
+            .comment("Armazenamento das contas: JSON (arquivo legível), MMAP (registros fixos mapeados em memória, atualizações no lugar) ou SQL (banco H2 embarcado, atualizações em lote) (padrão: JSON)")
+            .defineEnum("storageBackend", StorageBackend.JSON);
+    
+    private static final ForgeConfigSpec.BooleanValue LAZY_HYDRATION = BUILDER
+            .comment("Carrega as contas sob demanda em vez de todas na inicialização; requer storageBackend = MMAP ou SQL (padrão: false)")
+            .define("lazyHydration", false);
+    
+    private static final ForgeConfigSpec.IntValue USER_CACHE_SIZE = BUILDER
+            .comment("Quantidade máxima de contas de jogadores offline mantidas em cache no modo sob demanda (padrão: 4096)")
+            .defineInRange("userCacheSize", 4096, 16, 1000000);
+    
+    private static final ForgeConfigSpec.IntValue BACKUP_INTERVAL_MINUTES = BUILDER
+            .comment("Intervalo em minutos entre os backups compactados dos dados de usuários na pasta backups/; 0 desativa (padrão: 60)")
+            .defineInRange("backupIntervalMinutes", 60, 0, 10080);
+    
+    private static final ForgeConfigSpec.IntValue BACKUP_RETENTION = BUILDER
+            .comment("Quantidade de backups mantidos; os mais antigos são apagados (padrão: 24)")
+            .defineInRange("backupRetention", 24, 1, 10000);
+    
+    private static final ForgeConfigSpec.ConfigValue<String> REPLICATION_DIRECTORY = BUILDER
+            .comment("Diretório (outro disco ou montagem NFS) que recebe uma cópia de reserva das contas, atualizada a cada alteração; vazio desativa (padrão: vazio)")
+            .define("replicationDirectory", "");
+    
+    private static final ForgeConfigSpec.IntValue REPLICATION_LOG_SIZE_KB = BUILDER
+            .comment("Tamanho em KB do diário da cópia de reserva que faz ela ser recriada a partir de um snapshot novo (padrão: 4096)")
+            .defineInRange("replicationLogSizeKb", 4096, 64, 1048576);
+    
+    private static final ForgeConfigSpec.IntValue KDF_ITERATIONS = BUILDER
+            .comment("Iterações do PBKDF2 no hash das senhas; 0 calibra na inicialização para atingir kdfTargetMillis (padrão: 0)")
+            .defineInRange("kdfIterations", 0, 0, 10000000);
+    
+    private static final ForgeConfigSpec.IntValue KDF_TARGET_MILLIS = BUILDER
+            .comment("Tempo alvo em milissegundos de cada verificação de senha usado na calibração (padrão: 100)")
+            .defineInRange("kdfTargetMillis", 100, 10, 2000);
+    
+    private static final ForgeConfigSpec.IntValue AUTH_WORKER_THREADS = BUILDER
+            .comment("Threads dedicadas ao hash das senhas, fora da thread do servidor (padrão: 2)")
+            .defineInRange("authWorkerThreads", 2, 1, 64);
+    
+    private static final ForgeConfigSpec.IntValue AUTH_QUEUE_SIZE = BUILDER
+            .comment("Pedidos de login/registro aguardando uma thread; com a fila cheia o jogador é avisado para tentar de novo (padrão: 64)")
+            .defineInRange("authQueueSize", 64, 1, 10000);
+    
+    private static final ForgeConfigSpec.IntValue AUTH_RATE_GLOBAL_PER_SECOND = BUILDER
+            .comment("Tentativas de autenticação (login, registro, troca de senha) por segundo somando todos os jogadores (padrão: 20)")
+            .defineInRange("authRateGlobalPerSecond", 20, 1, 10000);
+    
+    private static final ForgeConfigSpec.IntValue AUTH_RATE_GLOBAL_BURST = BUILDER
+            .comment("Tentativas globais aceitas de uma vez antes de aplicar o limite por segundo (padrão: 40)")
+            .defineInRange("authRateGlobalBurst", 40, 1, 100000);
+    
+    private static final ForgeConfigSpec.IntValue AUTH_RATE_IP_PER_MINUTE = BUILDER
+            .comment("Tentativas de autenticação por minuto vindas de um mesmo IP (padrão: 10)")
+            .defineInRange("authRateIpPerMinute", 10, 1, 10000);
+    
+    private static final ForgeConfigSpec.IntValue AUTH_RATE_IP_BURST = BUILDER
+            .comment("Tentativas seguidas aceitas de um mesmo IP antes de aplicar o limite por minuto (padrão: 5)")
+            .defineInRange("authRateIpBurst", 5, 1, 1000);
+    
+    private static final ForgeConfigSpec.IntValue AUTH_RATE_ACCOUNT_PER_MINUTE = BUILDER
+            .comment("Tentativas de autenticação por minuto para uma mesma conta (padrão: 6)")
+            .defineInRange("authRateAccountPerMinute", 6, 1, 10000);
+    
+    private static final ForgeConfigSpec.IntValue AUTH_RATE_ACCOUNT_BURST = BUILDER
+            .comment("Tentativas seguidas aceitas para uma mesma conta antes de aplicar o limite por minuto (padrão: 3)")
+            .defineInRange("authRateAccountBurst", 3, 1, 1000);
+    
+    private static final ForgeConfigSpec.IntValue LOCKOUT_IP_ATTEMPTS = BUILDER
+            .comment("Senhas erradas vindas de um mesmo IP (somando todas as contas) que bloqueiam o IP (padrão: 15)")
+            .defineInRange("lockoutIpAttempts", 15, 1, 1000);
+    
+    private static final ForgeConfigSpec.IntValue LOCKOUT_BASE_MINUTES = BUILDER
+            .comment("Duração em minutos do primeiro bloqueio; cada bloqueio seguido dura o dobro (padrão: 5)")
+            .defineInRange("lockoutBaseMinutes", 5, 1, 1440);
+    
+    private static final ForgeConfigSpec.IntValue LOCKOUT_MAX_MINUTES = BUILDER
+            .comment("Duração máxima em minutos de um bloqueio (padrão: 1440 = 24 horas)")
+            .defineInRange("lockoutMaxMinutes", 1440, 1, 43200);
+    
+    private static final ForgeConfigSpec.IntValue LOCKOUT_DECAY_MINUTES = BUILDER
+            .comment("Minutos para a contagem de senhas erradas cair pela metade (padrão: 15)")
+            .defineInRange("lockoutDecayMinutes", 15, 1, 10080);
+    
+    private static final ForgeConfigSpec.IntValue RECONNECT_GRACE_MINUTES = BUILDER
+            .comment("Minutos em que um jogador logado que saiu volta logado sem senha, se reconectar do mesmo IP; 0 desativa (padrão: 0)")
+            .defineInRange("reconnectGraceMinutes", 0, 0, 1440);
+    
+    private static final ForgeConfigSpec.IntValue SESSION_TOKEN_DAYS = BUILDER
+            .comment("Dias de validade do token de sessão enviado ao cliente com o mod após o login com senha; 0 desativa (padrão: 0)")
+            .defineInRange("sessionTokenDays", 0, 0, 365);
+    
+    private static final ForgeConfigSpec.ConfigValue<String> BREACHED_PASSWORD_FILTER = BUILDER
+            .comment("Filtro de senhas comuns/vazadas compilado com BreachedPasswordFilter, recusadas no registro e na troca de senha; sem o arquivo ou vazio desativa (padrão: aliloginmod_breached.bloom)")
+            .define("breachedPasswordFilter", "aliloginmod_breached.bloom");
+    
+    private static final ForgeConfigSpec.IntValue REGISTRATION_MAX_PER_IP = BUILDER
+            .comment("Máximo de contas registradas a partir de um mesmo IP; 0 sem limite (padrão: 5)")
+            .defineInRange("registrationMaxPerIp", 5, 0, 10000);
+    
+    private static final ForgeConfigSpec.IntValue REGISTRATION_MAX_PER_WINDOW = BUILDER
+            .comment("Máximo de contas registradas a partir de um mesmo IP dentro da janela; 0 sem limite (padrão: 2)")
+            .defineInRange("registrationMaxPerWindow", 2, 0, 10000);
+    
+    private static final ForgeConfigSpec.IntValue REGISTRATION_WINDOW_HOURS = BUILDER
+            .comment("Duração em horas da janela de registros por IP (padrão: 24)")
+            .defineInRange("registrationWindowHours", 24, 1, 8760);
+    
     static final ForgeConfigSpec SPEC = BUILDER.build();
     
     public static int loginTimeout;
     public static int maxLoginAttempts;
     public static boolean allowClientBypass;
     public static String sharedSecret;
+    public static boolean writeBehind;
+    public static int flushIntervalSeconds;
+    public static int maxDirtyAgeSeconds;
+    public static boolean journalMode;
+    public static int journalCompactSizeKb;
+    public static int journalCompactAgeMinutes;
+    public static int shardCount;
+    public static StorageBackend storageBackend = StorageBackend.JSON;
+    public static SnapshotFormat snapshotFormat = SnapshotFormat.JSON;
+    public static boolean prettyJson;
+    public static boolean lazyHydration;
+    public static int userCacheSize = 4096;
+    public static int backupIntervalMinutes;
+    public static int backupRetention = 24;
+    public static String replicationDirectory = "";
+    public static int replicationLogSizeKb = 4096;
+    public static int kdfIterations;
+    public static int kdfTargetMillis = 100;
+    public static int authWorkerThreads = 2;
+    public static int authQueueSize = 64;
+    public static int authRateGlobalPerSecond = 20;
+    public static int authRateGlobalBurst = 40;
+    public static int authRateIpPerMinute = 10;
+    public static int authRateIpBurst = 5;
+    public static int authRateAccountPerMinute = 6;
+    public static int authRateAccountBurst = 3;
+    public static int lockoutIpAttempts = 15;
+    public static int lockoutBaseMinutes = 5;
+    public static int lockoutMaxMinutes = 1440;
+    public static int lockoutDecayMinutes = 15;
+    public static int reconnectGraceMinutes;
+    public static int sessionTokenDays;
+    public static String breachedPasswordFilter = "aliloginmod_breached.bloom";
+    public static int registrationMaxPerIp = 5;
+    public static int registrationMaxPerWindow = 2;
+    public static int registrationWindowHours = 24;
     
     @SubscribeEvent
     static void onLoad(final ModConfigEvent event) {
@@ -39,5 +232,41 @@ public class Config {
         maxLoginAttempts = MAX_LOGIN_ATTEMPTS.get();
         allowClientBypass = ALLOW_CLIENT_BYPASS.get();
         sharedSecret = SHARED_SECRET.get();
+        writeBehind = WRITE_BEHIND.get();
+        flushIntervalSeconds = FLUSH_INTERVAL_SECONDS.get();
+        maxDirtyAgeSeconds = MAX_DIRTY_AGE_SECONDS.get();
+        journalMode = JOURNAL_MODE.get();
+        journalCompactSizeKb = JOURNAL_COMPACT_SIZE_KB.get();
+        journalCompactAgeMinutes = JOURNAL_COMPACT_AGE_MINUTES.get();
+        shardCount = SHARD_COUNT.get();
+        storageBackend = STORAGE_BACKEND.get();
+        snapshotFormat = SNAPSHOT_FORMAT.get();
+        prettyJson = PRETTY_JSON.get();
+        lazyHydration = LAZY_HYDRATION.get();
+        userCacheSize = USER_CACHE_SIZE.get();
+        backupIntervalMinutes = BACKUP_INTERVAL_MINUTES.get();
+        backupRetention = BACKUP_RETENTION.get();
+        replicationDirectory = REPLICATION_DIRECTORY.get();
+        replicationLogSizeKb = REPLICATION_LOG_SIZE_KB.get();
+        kdfIterations = KDF_ITERATIONS.get();
+        kdfTargetMillis = KDF_TARGET_MILLIS.get();
+        authWorkerThreads = AUTH_WORKER_THREADS.get();
+        authQueueSize = AUTH_QUEUE_SIZE.get();
+        authRateGlobalPerSecond = AUTH_RATE_GLOBAL_PER_SECOND.get();
+        authRateGlobalBurst = AUTH_RATE_GLOBAL_BURST.get();
+        authRateIpPerMinute = AUTH_RATE_IP_PER_MINUTE.get();
+        authRateIpBurst = AUTH_RATE_IP_BURST.get();
+        authRateAccountPerMinute = AUTH_RATE_ACCOUNT_PER_MINUTE.get();
+        authRateAccountBurst = AUTH_RATE_ACCOUNT_BURST.get();
+        lockoutIpAttempts = LOCKOUT_IP_ATTEMPTS.get();
+        lockoutBaseMinutes = LOCKOUT_BASE_MINUTES.get();
+        lockoutMaxMinutes = LOCKOUT_MAX_MINUTES.get();
+        lockoutDecayMinutes = LOCKOUT_DECAY_MINUTES.get();
+        reconnectGraceMinutes = RECONNECT_GRACE_MINUTES.get();
+        sessionTokenDays = SESSION_TOKEN_DAYS.get();
+        breachedPasswordFilter = BREACHED_PASSWORD_FILTER.get();
+        registrationMaxPerIp = REGISTRATION_MAX_PER_IP.get();
+        registrationMaxPerWindow = REGISTRATION_MAX_PER_WINDOW.get();
+        registrationWindowHours = REGISTRATION_WINDOW_HOURS.get();
     }
 }
\ No newline at end of file
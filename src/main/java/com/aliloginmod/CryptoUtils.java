@@ -0,0 +1,156 @@
+package com.aliloginmod;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Funções de hash, HMAC e hexadecimal usadas pelo servidor e pelo cliente.
+ *
+ * As instâncias de {@link MessageDigest} e {@link Mac} são reaproveitadas por thread (criá-las
+ * a cada chamada consulta os provedores de segurança e aloca bastante), o hexadecimal usa
+ * tabelas em vez de {@code Integer.toHexString} e as comparações levam o mesmo tempo qualquer
+ * que seja a posição da primeira diferença.
+ */
+public final class CryptoUtils {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    // Valor de cada caractere hexadecimal (maiúsculo ou minúsculo); -1 para os demais
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[HEX_DIGITS[i]] = (byte) i;
+            HEX_VALUES[Character.toUpperCase(HEX_DIGITS[i])] = (byte) i;
+        }
+    }
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    });
+
+    private static final ThreadLocal<KeyedMac> HMAC_SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return new KeyedMac(Mac.getInstance("HmacSHA256"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("HmacSHA256 indisponível", e);
+        }
+    });
+
+    /**
+     * Mac da thread e a chave com que foi iniciado (reiniciado apenas quando a chave muda)
+     */
+    private static final class KeyedMac {
+        final Mac mac;
+        byte[] key;
+
+        KeyedMac(Mac mac) {
+            this.mac = mac;
+        }
+    }
+
+    private CryptoUtils() {
+    }
+
+    public static byte[] sha256(byte[] input) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return digest.digest(input);
+    }
+
+    public static byte[] sha256(String input) {
+        return sha256(input.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * SHA-256 do texto em UTF-8, em hexadecimal minúsculo
+     */
+    public static String sha256Hex(String input) {
+        return toHex(sha256(input));
+    }
+
+    /**
+     * HMAC-SHA256 com o Mac da thread. A chave é comparada por referência: passe sempre o mesmo
+     * array para a mesma chave, assim o Mac só é iniciado uma vez por thread.
+     */
+    public static byte[] hmacSha256(byte[] key, byte[] data) {
+        KeyedMac keyed = HMAC_SHA256.get();
+        try {
+            if (keyed.key != key) {
+                keyed.mac.init(new SecretKeySpec(key, "HmacSHA256"));
+                keyed.key = key;
+            } else {
+                keyed.mac.reset();
+            }
+            return keyed.mac.doFinal(data);
+        } catch (InvalidKeyException e) {
+            keyed.key = null;
+            throw new IllegalArgumentException("Chave HMAC inválida", e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0, j = 0; i < bytes.length; i++) {
+            int value = bytes[i] & 0xff;
+            out[j++] = HEX_DIGITS[value >>> 4];
+            out[j++] = HEX_DIGITS[value & 0x0f];
+        }
+        return new String(out);
+    }
+
+    /**
+     * Converte hexadecimal (maiúsculo ou minúsculo) em bytes. Retorna null se o texto não for
+     * hexadecimal válido.
+     */
+    public static byte[] fromHex(CharSequence hex) {
+        int length = hex.length();
+        if ((length & 1) != 0) {
+            return null;
+        }
+        byte[] out = new byte[length / 2];
+        for (int i = 0; i < length; i += 2) {
+            int high = hexValue(hex.charAt(i));
+            int low = hexValue(hex.charAt(i + 1));
+            if ((high | low) < 0) {
+                return null;
+            }
+            out[i / 2] = (byte) ((high << 4) | low);
+        }
+        return out;
+    }
+
+    private static int hexValue(char c) {
+        return c < 128 ? HEX_VALUES[c] : -1;
+    }
+
+    /**
+     * Compara em tempo constante (o tempo não revela quantos bytes iniciais coincidem)
+     */
+    public static boolean constantTimeEquals(byte[] a, byte[] b) {
+        return MessageDigest.isEqual(a, b);
+    }
+
+    /**
+     * Compara textos em tempo constante; null só é igual a null
+     */
+    public static boolean constantTimeEquals(String a, String b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        int diff = a.length() ^ b.length();
+        for (int i = 0; i < a.length(); i++) {
+            // Com tamanhos diferentes compara com o próprio a, mantendo o mesmo trabalho
+            diff |= a.charAt(i) ^ (i < b.length() ? b.charAt(i) : a.charAt(i));
+        }
+        return diff == 0;
+    }
+}
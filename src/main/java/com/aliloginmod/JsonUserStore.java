@@ -0,0 +1,493 @@
+package com.aliloginmod;
+
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Armazenamento em arquivos: todas as contas em memória, gravadas em JSON ou no formato binário
+ * compacto, em um arquivo único ou em shards, opcionalmente com diário de alterações entre os snapshots.
+ */
+public class JsonUserStore implements UserStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonUserStore.class);
+    private static final String DATA_FILE = "aliloginmod_users.json";
+    private static final String BINARY_FILE = "aliloginmod_users.dat";
+    private static final String JOURNAL_FILE = "aliloginmod_users.journal";
+    private static final String SHARD_DIR = "aliloginmod_users";
+
+    // Armazena dados dos usuários registrados (valores imutáveis, substituídos a cada alteração)
+    private final Map<String, UserDataManager.UserData> registeredUsers = new ConcurrentHashMap<>();
+
+    // Alterações usam a trava de leitura (em paralelo entre si); a cópia do snapshot usa a de escrita
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    // Impede que um snapshot seja gravado enquanto um backup copia os arquivos
+    private final Object fileLock = new Object();
+
+    // Duração da última cópia do mapa (tempo em que as alterações ficaram bloqueadas)
+    private volatile long lastSnapshotCopyNanos;
+
+    // Métricas do carregamento
+    private final StreamingUserLoader.LoadMetrics loadMetrics;
+
+    // Serialização sem reflexão; compacta, a menos que prettyJson esteja ativado
+    private final Gson gson = UserDataAdapters.createGson(Config.prettyJson);
+
+    // Diário de alterações (apenas no modo diário)
+    private volatile UserDataJournal journal;
+
+    // Arquivos divididos por hash do nome (null quando usa arquivo único)
+    private volatile ShardedUserFiles shards;
+
+    // Formato dos snapshots gravados
+    private volatile Config.SnapshotFormat format = Config.SnapshotFormat.JSON;
+
+    // Contas recuperadas e registros rejeitados pela leitura tolerante no último carregamento
+    private final AtomicLong salvagedRecords = new AtomicLong();
+    private final AtomicLong rejectedRecords = new AtomicLong();
+
+    // Dados recuperados de um arquivo corrompido: um snapshot limpo é gravado após o carregamento
+    private volatile boolean repaired;
+
+    // Nada é gravado antes de um carregamento bem-sucedido (evita sobrescrever os dados com um mapa vazio)
+    private volatile boolean initialized;
+
+    public JsonUserStore(StreamingUserLoader.LoadMetrics loadMetrics) {
+        this.loadMetrics = loadMetrics;
+    }
+
+    /**
+     * Copia as contas do layout JSON existente para outro armazenamento (migração inicial).
+     * Os arquivos JSON são mantidos intactos como cópia de segurança.
+     * Retorna false se os dados existirem mas nenhuma geração puder ser lida.
+     */
+    public static boolean migrateInto(UserStore target) throws IOException {
+        JsonUserStore source = new JsonUserStore(new StreamingUserLoader.LoadMetrics());
+        if (!source.readLayout(detectLayout(Config.snapshotFormat))) {
+            return false;
+        }
+        for (Map.Entry<String, UserDataManager.UserData> entry : source.registeredUsers.entrySet()) {
+            target.register(entry.getKey(), entry.getValue());
+        }
+        LOGGER.info("{} contas copiadas dos arquivos de dados", source.registeredUsers.size());
+        return true;
+    }
+
+    /**
+     * Layout encontrado no disco: formato e shards (null quando é um arquivo único)
+     */
+    private record ExistingLayout(Config.SnapshotFormat format, ShardedUserFiles shards) {
+    }
+
+    private static Path dataFile(Config.SnapshotFormat format) {
+        return Paths.get(format == Config.SnapshotFormat.BINARY ? BINARY_FILE : DATA_FILE);
+    }
+
+    private static String shardExtension(Config.SnapshotFormat format) {
+        return format == Config.SnapshotFormat.BINARY ? ".dat" : ".json";
+    }
+
+    /**
+     * Procura os dados no formato preferido e depois no outro. Retorna null se não houver dados.
+     */
+    private static ExistingLayout detectLayout(Config.SnapshotFormat preferred) {
+        for (Config.SnapshotFormat candidate : new Config.SnapshotFormat[] {preferred, other(preferred)}) {
+            ShardedUserFiles existingShards = ShardedUserFiles.detect(Paths.get(SHARD_DIR), shardExtension(candidate));
+            if (existingShards != null) {
+                return new ExistingLayout(candidate, existingShards);
+            }
+            if (AtomicSnapshotWriter.anyGenerationExists(dataFile(candidate))) {
+                return new ExistingLayout(candidate, null);
+            }
+        }
+        return null;
+    }
+
+    private static Config.SnapshotFormat other(Config.SnapshotFormat format) {
+        return format == Config.SnapshotFormat.BINARY ? Config.SnapshotFormat.JSON : Config.SnapshotFormat.BINARY;
+    }
+
+    /**
+     * Carrega os dados (arquivo único ou shards), usando a geração válida mais recente
+     */
+    @Override
+    public void load() {
+        initialized = false;
+        repaired = false;
+        salvagedRecords.set(0);
+        rejectedRecords.set(0);
+        format = Config.snapshotFormat;
+        Path journalFile = Paths.get(JOURNAL_FILE);
+        ExistingLayout existing = detectLayout(format);
+        shards = Config.shardCount > 1 ? new ShardedUserFiles(Paths.get(SHARD_DIR), Config.shardCount, shardExtension(format)) : null;
+
+        boolean needsSnapshot = existing == null;
+        if (needsSnapshot) {
+            LOGGER.info("Arquivo de dados de usuários não encontrado. Criando novo...");
+        }
+        if (!readLayout(existing)) {
+            LOGGER.error("Dados de usuários ilegíveis: nenhuma alteração será gravada para não sobrescrever os arquivos existentes");
+            return;
+        }
+        initialized = true;
+
+        // Migra entre arquivo único e shards, muda a quantidade de shards ou converte o formato
+        boolean layoutChanged = existing != null && (existing.format() != format || (shards != null
+                ? existing.shards() == null || existing.shards().shardCount() != shards.shardCount()
+                : existing.shards() != null));
+        // Diário deixado por uma execução anterior em modo diário: incorpora ao snapshot
+        boolean foldJournal = !Config.journalMode && Files.exists(journalFile);
+
+        if (needsSnapshot || layoutChanged || foldJournal || repaired) {
+            try {
+                writeSnapshot();
+                if (layoutChanged) {
+                    finishLayoutMigration(existing);
+                }
+                if (foldJournal) {
+                    Files.delete(journalFile);
+                    LOGGER.info("Diário incorporado ao snapshot e removido (modo diário desativado)");
+                }
+            } catch (IOException e) {
+                LOGGER.error("Erro ao salvar dados de usuários após o carregamento: ", e);
+            }
+        }
+
+        if (Config.journalMode) {
+            journal = new UserDataJournal(journalFile);
+        }
+    }
+
+    /**
+     * Lê o snapshot (arquivo único ou shards) e reaplica o diário, sem gravar nada.
+     * Retorna false se os dados existirem mas nenhuma geração puder ser lida.
+     */
+    private boolean readLayout(ExistingLayout existing) {
+        if (existing != null && existing.shards() != null) {
+            // Os shards já são lidos em paralelo entre si
+            try {
+                existing.shards().loadAll((in, users) -> streamUsers(in, users, existing.format(), 0),
+                                          (path, users) -> salvage(path, users, existing.format()),
+                                          registeredUsers);
+            } catch (IOException e) {
+                registeredUsers.clear();
+                LOGGER.error("Erro ao carregar shards de usuários: ", e);
+                return false;
+            }
+        } else if (existing != null) {
+            Path dataFile = dataFile(existing.format());
+            Path newest = AtomicSnapshotWriter.newestGeneration(dataFile);
+            long size = newest == null ? 0 : newest.toFile().length();
+            AtomicSnapshotWriter.Generation<Long> loaded = AtomicSnapshotWriter.readNewestValidGeneration(dataFile, in -> {
+                // Uma geração inválida pode ter deixado contas parciais no mapa
+                registeredUsers.clear();
+                return streamUsers(in, registeredUsers, existing.format(), size);
+            });
+
+            if (loaded != null && !loaded.path().equals(newest)) {
+                // A geração mais recente está danificada, mas suas contas legíveis são mais novas
+                // que as da geração carregada: recupera e aplica por cima
+                Path copy = AtomicSnapshotWriter.quarantine(newest);
+                LOGGER.error("Geração mais recente {} inválida, dados carregados de {}. Recuperando as contas legíveis dela (cópia preservada em {})",
+                             newest, loaded.path(), copy);
+                salvage(newest, registeredUsers, existing.format());
+            } else if (loaded == null) {
+                registeredUsers.clear();
+                Path copy = AtomicSnapshotWriter.quarantine(dataFile);
+                LOGGER.error("Nenhuma geração válida dos dados de usuários encontrada! Cópia preservada em {}", copy);
+                if (!salvage(AtomicSnapshotWriter.newestGeneration(dataFile), registeredUsers, existing.format())) {
+                    return false;
+                }
+            }
+        }
+
+        int replayed = UserDataJournal.replay(Paths.get(JOURNAL_FILE), registeredUsers);
+        if (replayed > 0) {
+            LOGGER.info("{} alterações reaplicadas a partir do diário", replayed);
+        }
+        return true;
+    }
+
+    /**
+     * Recupera as contas válidas de um arquivo que não pôde ser lido por inteiro para o mapa dado.
+     * Retorna false se nem a leitura tolerante conseguir abrir o arquivo.
+     */
+    private boolean salvage(Path file, Map<String, UserDataManager.UserData> users, Config.SnapshotFormat snapshotFormat) {
+        try {
+            SalvageUserLoader.Result result = SalvageUserLoader.salvage(file, snapshotFormat, users, gson);
+            salvagedRecords.addAndGet(result.recovered());
+            rejectedRecords.addAndGet(result.rejected());
+            repaired = true;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Erro ao recuperar contas de {}: ", file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Remove o layout antigo depois que o novo foi gravado
+     */
+    private void finishLayoutMigration(ExistingLayout existing) throws IOException {
+        if (existing.shards() != null) {
+            if (shards != null && existing.format() == format) {
+                shards.deleteStaleShards();
+            } else {
+                existing.shards().deleteAll();
+            }
+        } else {
+            // Arquivo único antigo: preservado como .migrated, sem gerações que o fariam ser lido de novo
+            Path oldFile = dataFile(existing.format());
+            if (Files.exists(oldFile)) {
+                Files.move(oldFile, AtomicSnapshotWriter.sibling(oldFile, ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.deleteIfExists(AtomicSnapshotWriter.sibling(oldFile, AtomicSnapshotWriter.TMP_SUFFIX));
+            Files.deleteIfExists(AtomicSnapshotWriter.sibling(oldFile, AtomicSnapshotWriter.BACKUP_SUFFIX));
+        }
+
+        String layout = shards != null ? shards.shardCount() + " shards" : "arquivo único";
+        LOGGER.info("Dados de usuários migrados para {} ({})", layout, format);
+    }
+
+    /**
+     * Grava o snapshot completo de forma atômica (temporário + fsync + renomeação)
+     */
+    private void writeSnapshot() throws IOException {
+        ShardedUserFiles current = shards;
+        synchronized (fileLock) {
+            if (current != null) {
+                current.writeAll(this::snapshot, this::writeUsers);
+            } else {
+                Map<String, UserDataManager.UserData> users = snapshot();
+                AtomicSnapshotWriter.write(dataFile(format), out -> writeUsers(users, out));
+            }
+        }
+    }
+
+    /**
+     * Cópia consistente do mapa em um instante. Como as contas são imutáveis, basta copiar as
+     * referências; a serialização acontece depois, sem bloquear logins.
+     */
+    private Map<String, UserDataManager.UserData> snapshot() {
+        snapshotLock.writeLock().lock();
+        try {
+            long start = System.nanoTime();
+            Map<String, UserDataManager.UserData> copy = new HashMap<>(registeredUsers);
+            lastSnapshotCopyNanos = System.nanoTime() - start;
+            return copy;
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    private void writeUsers(Map<String, UserDataManager.UserData> users, OutputStream out) throws IOException {
+        if (format == Config.SnapshotFormat.BINARY) {
+            BinaryUserSnapshot.write(users, out);
+            return;
+        }
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        gson.toJson(users, writer);
+        writer.flush();
+    }
+
+    /**
+     * Lê as contas de um snapshot diretamente para o mapa dado
+     */
+    private Long streamUsers(InputStream in, Map<String, UserDataManager.UserData> users,
+                             Config.SnapshotFormat snapshotFormat, long sizeBytes) throws IOException {
+        if (snapshotFormat == Config.SnapshotFormat.BINARY) {
+            return BinaryUserSnapshot.read(loadMetrics.count(in), users);
+        }
+        Reader reader = new InputStreamReader(loadMetrics.count(in), StandardCharsets.UTF_8);
+        return StreamingUserLoader.load(reader, users, gson, sizeBytes);
+    }
+
+    /**
+     * No modo diário grava apenas os registros pendentes; o snapshot fica a cargo do compactador.
+     * Com shards, reescreve apenas os shards alterados.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!initialized) {
+            return;
+        }
+        UserDataJournal current = journal;
+        ShardedUserFiles currentShards = shards;
+        if (current != null) {
+            current.sync();
+        } else if (currentShards != null) {
+            synchronized (fileLock) {
+                currentShards.flushDirty(this::snapshot, this::writeUsers);
+            }
+        } else {
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Copia o snapshot em disco (arquivo único ou shards) e o diário. No modo diário a cópia
+     * acontece entre duas compactações, então o par snapshot + diário é sempre coerente.
+     */
+    @Override
+    public List<Path> copyPersistedFiles(Path directory) throws IOException {
+        List<Path> copied = new ArrayList<>();
+        UserDataJournal current = journal;
+        if (current != null) {
+            current.runSynced(() -> copyFiles(directory, copied));
+        } else {
+            copyFiles(directory, copied);
+        }
+        return copied;
+    }
+
+    private void copyFiles(Path directory, List<Path> copied) throws IOException {
+        synchronized (fileLock) {
+            ShardedUserFiles currentShards = shards;
+            if (currentShards != null) {
+                for (int shard = 0; shard < currentShards.shardCount(); shard++) {
+                    copyIfExists(currentShards.shardPath(shard), directory.resolve(SHARD_DIR), copied);
+                }
+            } else {
+                copyIfExists(dataFile(format), directory, copied);
+            }
+            copyIfExists(Paths.get(JOURNAL_FILE), directory, copied);
+        }
+    }
+
+    private static void copyIfExists(Path file, Path directory, List<Path> copied) throws IOException {
+        if (Files.isRegularFile(file)) {
+            Path copy = directory.resolve(file.getFileName());
+            UserDataBackups.copyFile(file, copy);
+            copied.add(copy);
+        }
+    }
+
+    @Override
+    public void start() throws IOException {
+        UserDataJournal current = journal;
+        if (current != null) {
+            try {
+                current.open();
+                current.startCompactor(Config.journalCompactSizeKb * 1024L,
+                                       TimeUnit.MINUTES.toMillis(Config.journalCompactAgeMinutes),
+                                       this::writeSnapshot);
+            } catch (IOException e) {
+                LOGGER.error("Erro ao abrir diário de usuários, usando gravação do arquivo completo: ", e);
+                journal = null;
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        UserDataJournal current = journal;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Aplica a alteração no mapa e a registra para ser gravada (no diário ou no próximo snapshot).
+     * Retorna false se a conta não existir (ou, no registro, se já existir).
+     */
+    private boolean recordChange(UserDataChange change) {
+        snapshotLock.readLock().lock();
+        try {
+            if (change.type == UserDataChange.Type.REGISTER
+                    ? registeredUsers.putIfAbsent(change.user, change.data) != null
+                    : !change.applyTo(registeredUsers)) {
+                return false;
+            }
+            UserDataJournal current = journal;
+            if (current != null) {
+                current.append(change);
+            }
+            ShardedUserFiles currentShards = shards;
+            if (currentShards != null) {
+                currentShards.markDirty(change.user);
+            }
+            return true;
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean register(String key, UserDataManager.UserData data) {
+        return recordChange(UserDataChange.register(key, data));
+    }
+
+    @Override
+    public UserDataManager.UserData lookup(String key) {
+        return registeredUsers.get(key);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return registeredUsers.containsKey(key);
+    }
+
+    @Override
+    public String passwordHash(String key) {
+        UserDataManager.UserData data = registeredUsers.get(key);
+        return data != null ? data.passwordHash : null;
+    }
+
+    @Override
+    public void updateLastLogin(String key, long lastLogin) {
+        recordChange(UserDataChange.login(key, lastLogin));
+    }
+
+    @Override
+    public void updatePassword(String key, String passwordHash) {
+        recordChange(UserDataChange.password(key, passwordHash));
+    }
+
+    @Override
+    public void updatePosition(String key, UserDataManager.PlayerPosition position) {
+        recordChange(UserDataChange.position(key, position));
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, UserDataManager.UserData> consumer) {
+        registeredUsers.forEach(consumer);
+    }
+
+    @Override
+    public int count() {
+        return registeredUsers.size();
+    }
+
+    @Override
+    public void appendStats(Map<String, Object> stats) {
+        stats.put("snapshotCopyMillis", lastSnapshotCopyNanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+        stats.put("loadSalvagedRecords", salvagedRecords.get());
+        stats.put("loadRejectedRecords", rejectedRecords.get());
+
+        UserDataJournal current = journal;
+        if (current != null) {
+            current.appendStats(stats);
+        }
+
+        ShardedUserFiles currentShards = shards;
+        if (currentShards != null) {
+            currentShards.appendStats(stats);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.aliloginmod;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloqueios por tentativas de login erradas, por conta e por IP, que sobrevivem a reconexões e
+ * reinícios do servidor.
+ *
+ * Cada chave guarda uma pontuação de falhas que decai pela metade a cada meia-vida configurada.
+ * Ao atingir o limite a chave fica bloqueada, e cada novo bloqueio dura o dobro do anterior até o
+ * máximo. Na entrada do jogador só o IP é verificado (uma consulta ao mapa); o bloqueio da conta
+ * vale para as tentativas de /logar, senão qualquer um poderia manter o dono fora. As chaves sem
+ * atividade expiram por um índice ordenado pelo instante de expiração, sem percorrer o mapa
+ * inteiro. O arquivo é binário e compacto, gravado em lote pela gravação em segundo plano.
+ */
+public class LockoutStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LockoutStore.class);
+
+    private static final int MAGIC = 0x414C4C4B; // "ALLK"
+    private static final int VERSION = 1;
+    // Tempo sem falhas após o fim do último bloqueio para esquecer a chave (e zerar o dobro)
+    private static final long FORGET_AFTER_MILLIS = TimeUnit.HOURS.toMillis(24);
+    // Granularidade do índice de expiração
+    private static final long EXPIRY_BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final String ACCOUNT_PREFIX = "a:";
+    private static final String IP_PREFIX = "i:";
+
+    /**
+     * Estado de uma chave. {@code score} vale no instante {@code updatedAt} e decai a partir dele.
+     */
+    record Entry(float score, long updatedAt, long lockedUntil, int strikes) {
+        double scoreAt(long now, long halfLifeMillis) {
+            long elapsed = Math.max(0, now - updatedAt);
+            return score * Math.pow(0.5, (double) elapsed / halfLifeMillis);
+        }
+
+        long expiresAt() {
+            return Math.max(updatedAt, lockedUntil) + FORGET_AFTER_MILLIS;
+        }
+    }
+
+    /**
+     * Resultado de uma falha: falhas atuais da conta (já com o decaimento) e o bloqueio aplicado
+     */
+    public record Failure(int accountFailures, long lockedMillis) {
+    }
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Instante de expiração (arredondado) -> chaves que podem expirar nele
+    private final NavigableMap<Long, Set<String>> expiryIndex = new ConcurrentSkipListMap<>();
+    private final WriteBehindFlusher flusher;
+
+    // Métricas
+    private final AtomicLong lockouts = new AtomicLong();
+    private final AtomicLong blockedAttempts = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    public LockoutStore(Path file) {
+        this.file = file;
+        this.flusher = new WriteBehindFlusher("aliloginmod-lockout-flush", this::flushPending);
+    }
+
+    /**
+     * Carrega os bloqueios gravados e inicia a gravação em segundo plano
+     */
+    public void start() {
+        if (AtomicSnapshotWriter.anyGenerationExists(file)) {
+            Map<String, Entry> loaded = AtomicSnapshotWriter.readNewestValid(file, in -> read(new DataInputStream(in)));
+            if (loaded == null) {
+                LOGGER.warn("Arquivo de bloqueios {} ilegível, começando vazio", file);
+            } else {
+                long now = System.currentTimeMillis();
+                entries.clear();
+                expiryIndex.clear();
+                loaded.forEach((key, entry) -> {
+                    if (entry.expiresAt() > now) {
+                        entries.put(key, entry);
+                        index(key, entry);
+                    }
+                });
+                LOGGER.info("Carregados {} bloqueios/contadores de login", entries.size());
+            }
+        }
+        // Agrupa as falhas de uma enxurrada em poucas gravações
+        flusher.start(true, TimeUnit.SECONDS.toMillis(5), TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * Grava o que estiver pendente e para a gravação em segundo plano
+     */
+    public void stop() {
+        flusher.shutdown();
+    }
+
+    /**
+     * Tempo restante de bloqueio da conta ou do IP (o maior dos dois); 0 se liberado
+     */
+    public long remainingLockMillis(String account, String ip) {
+        long now = System.currentTimeMillis();
+        long remaining = Math.max(remaining(accountKey(account), now), remaining(ipKey(ip), now));
+        if (remaining > 0) {
+            blockedAttempts.incrementAndGet();
+        }
+        return remaining;
+    }
+
+    /**
+     * Tempo restante de bloqueio apenas do IP; 0 se liberado (verificação na entrada)
+     */
+    public long remainingIpLockMillis(String ip) {
+        return remainingLockMillis(null, ip);
+    }
+
+    private long remaining(String key, long now) {
+        if (key == null) {
+            return 0;
+        }
+        Entry entry = entries.get(key);
+        return entry == null ? 0 : Math.max(0, entry.lockedUntil() - now);
+    }
+
+    /**
+     * Registra uma senha errada para a conta e o IP
+     */
+    public Failure recordFailure(String account, String ip) {
+        long now = System.currentTimeMillis();
+        Entry accountEntry = fail(accountKey(account), Config.maxLoginAttempts, now);
+        Entry ipEntry = fail(ipKey(ip), Config.lockoutIpAttempts, now);
+
+        long locked = Math.max(0, Math.max(accountEntry != null ? accountEntry.lockedUntil() - now : 0,
+                                            ipEntry != null ? ipEntry.lockedUntil() - now : 0));
+        int failures = locked > 0 || accountEntry == null
+                ? Config.maxLoginAttempts
+                : (int) Math.round(accountEntry.score());
+        flusher.markDirty();
+        return new Failure(failures, locked);
+    }
+
+    private Entry fail(String key, int threshold, long now) {
+        if (key == null) {
+            return null;
+        }
+        long halfLife = TimeUnit.MINUTES.toMillis(Config.lockoutDecayMinutes);
+        Entry updated = entries.compute(key, (k, entry) -> {
+            double score = (entry == null ? 0 : entry.scoreAt(now, halfLife)) + 1;
+            int strikes = entry == null ? 0 : entry.strikes();
+            long lockedUntil = entry == null ? 0 : entry.lockedUntil();
+            // Contagem arredondada: falhas seguidas decaem um pouco e ainda devem contar inteiras
+            if (Math.round(score) >= threshold && lockedUntil <= now) {
+                // Cada bloqueio seguido dura o dobro do anterior, até o máximo
+                strikes++;
+                long base = TimeUnit.MINUTES.toMillis(Config.lockoutBaseMinutes);
+                long max = TimeUnit.MINUTES.toMillis(Config.lockoutMaxMinutes);
+                lockedUntil = now + Math.min(max, base << Math.min(strikes - 1, 30));
+                score = 0;
+                lockouts.incrementAndGet();
+            }
+            return new Entry((float) score, now, lockedUntil, strikes);
+        });
+        index(key, updated);
+        return updated;
+    }
+
+    /**
+     * Login bem-sucedido: esquece as falhas da conta (as do IP continuam)
+     */
+    public void recordSuccess(String account) {
+        String key = accountKey(account);
+        if (key != null && entries.remove(key) != null) {
+            flusher.markDirty();
+        }
+    }
+
+    /**
+     * Remove as chaves cuja expiração já passou, olhando apenas o começo do índice
+     */
+    public void expire() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        Map.Entry<Long, Set<String>> head;
+        while ((head = expiryIndex.firstEntry()) != null && head.getKey() <= now) {
+            expiryIndex.remove(head.getKey());
+            for (String key : head.getValue()) {
+                // Chaves atualizadas depois estão também em um balde posterior
+                Entry current = entries.get(key);
+                if (current != null && current.expiresAt() <= now && entries.remove(key, current)) {
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            expired.addAndGet(removed);
+            flusher.markDirty();
+            LOGGER.debug("{} contadores de login expirados", removed);
+        }
+    }
+
+    private void index(String key, Entry entry) {
+        long bucket = Math.floorDiv(entry.expiresAt(), EXPIRY_BUCKET_MILLIS) * EXPIRY_BUCKET_MILLIS + EXPIRY_BUCKET_MILLIS;
+        expiryIndex.computeIfAbsent(bucket, b -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    private static String accountKey(String account) {
+        return account == null ? null : ACCOUNT_PREFIX + account.toLowerCase(Locale.ROOT);
+    }
+
+    private static String ipKey(String ip) {
+        return ip == null || ip.isEmpty() ? null : IP_PREFIX + ip;
+    }
+
+    private void flushPending() {
+        try {
+            Map<String, Entry> snapshot = new HashMap<>(entries);
+            AtomicSnapshotWriter.write(file, out -> {
+                DataOutputStream data = new DataOutputStream(out);
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+                data.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+                    Entry entry = e.getValue();
+                    data.writeUTF(e.getKey());
+                    data.writeFloat(entry.score());
+                    data.writeLong(entry.updatedAt());
+                    data.writeLong(entry.lockedUntil());
+                    data.writeByte(Math.min(entry.strikes(), 127));
+                }
+                data.flush();
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, Entry> read(DataInputStream data) throws IOException {
+        if (data.readInt() != MAGIC) {
+            throw new IOException("não é um arquivo de bloqueios");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("versão " + version + " não suportada");
+        }
+        int count = data.readInt();
+        Map<String, Entry> loaded = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+        for (int i = 0; i < count; i++) {
+            String key = data.readUTF();
+            loaded.put(key, new Entry(data.readFloat(), data.readLong(), data.readLong(), data.readByte()));
+        }
+        return loaded;
+    }
+
+    /**
+     * Adiciona as métricas de bloqueio ao mapa de estatísticas
+     */
+    public void appendStats(Map<String, Object> stats) {
+        stats.put("lockoutEntries", entries.size());
+        stats.put("lockoutCount", lockouts.get());
+        stats.put("lockoutBlockedAttempts", blockedAttempts.get());
+        stats.put("lockoutExpired", expired.get());
+        flusher.appendStats(stats, "lockout");
+    }
+}
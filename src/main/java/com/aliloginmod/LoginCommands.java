@@ -14,10 +14,25 @@ import net.minecraftforge.fml.common.Mod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
 @Mod.EventBusSubscriber(modid = AliLoginMod.MODID)
 public class LoginCommands {
     private static final Logger LOGGER = LoggerFactory.getLogger(LoginCommands.class);
     
+    // Jogadores com uma verificação de senha em andamento (um pedido por vez)
+    private static final Set<UUID> pendingAuth = ConcurrentHashMap.newKeySet();
+    
+    private static final String BREACHED_PASSWORD_MESSAGE =
+            "§cEssa senha é muito comum ou apareceu em vazamentos de dados! Escolha outra senha.";
+    
     @SubscribeEvent
     public static void onRegisterCommands(RegisterCommandsEvent event) {
         CommandDispatcher<CommandSourceStack> dispatcher = event.getDispatcher();
@@ -39,6 +54,12 @@ public class LoginCommands {
                 .then(Commands.argument("jogador", StringArgumentType.string())
                         .executes(LoginCommands::executeForceLogin)));
         
+        // Comando /contasip <ip ou jogador> (console ou operadores)
+        dispatcher.register(Commands.literal("contasip")
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.argument("alvo", StringArgumentType.string())
+                        .executes(LoginCommands::executeAccountsByIp)));
+        
         // Comando /novasenha <senha_atual> <nova_senha>
         dispatcher.register(Commands.literal("novasenha")
                 .then(Commands.argument("senha_atual", StringArgumentType.string())
@@ -85,34 +106,44 @@ public class LoginCommands {
             return 0;
         }
         
+        if (BreachedPasswordFilter.isBreached(password)) {
+            player.sendSystemMessage(Component.literal(BREACHED_PASSWORD_MESSAGE));
+            return 0;
+        }
+        
         // Verifica se o usuário já está registrado
         if (UserDataManager.isUserRegistered(username)) {
             player.sendSystemMessage(Component.literal("§cVocê já está registrado! Use /logar <senha> para fazer login."));
             return 0;
         }
         
-        // Registra o usuário
-        boolean success = UserDataManager.registerUser(username, password);
-        
-        if (success) {
-             UserDataManager.loginPlayer(player);
-             SessionManager.cancelLoginTimeout(player.getUUID());
-             SessionManager.clearLoginAttempts(player.getUUID());
-             MessageManager.stopLoginReminders(player.getUUID());
-             
-             // Teleporta para última posição se existir
-             if (UserDataManager.hasPlayerPosition(username)) {
-                 UserDataManager.teleportPlayerToLastPosition(player);
-             }
-             
-             MessageManager.sendLoginSuccessMessage(player, true);
-             LOGGER.info("Jogador {} se registrou com sucesso", username);
-        } else {
-            player.sendSystemMessage(Component.literal("§cErro ao registrar. Tente novamente."));
-            LOGGER.error("Falha ao registrar jogador {}", username);
+        // Registra o usuário (hash em uma thread de autenticação; o login termina na thread do servidor)
+        if (!beginAuth(player)) {
+            return 0;
         }
-        
-        return success ? 1 : 0;
+        String ip = player.getIpAddress();
+        completeOnServer(player, username, UserDataManager.registerUser(username, password, ip), result -> {
+            switch (result) {
+                case REGISTERED -> {
+                    completeLogin(player, username, true);
+                    LOGGER.info("Jogador {} se registrou com sucesso", username);
+                }
+                case ALREADY_REGISTERED -> player.sendSystemMessage(Component.literal("§cVocê já está registrado! Use /logar <senha> para fazer login."));
+                case TOO_MANY_ACCOUNTS -> {
+                    player.sendSystemMessage(Component.literal("§cLimite de contas registradas a partir da sua conexão atingido!"));
+                    LOGGER.warn("Registro de {} recusado: IP {} já tem o máximo de contas", username, ip);
+                }
+                case TOO_MANY_RECENT -> {
+                    player.sendSystemMessage(Component.literal("§cMuitas contas registradas recentemente a partir da sua conexão. Tente novamente mais tarde."));
+                    LOGGER.warn("Registro de {} recusado: muitos registros recentes do IP {}", username, ip);
+                }
+                case FAILED -> {
+                    player.sendSystemMessage(Component.literal("§cErro ao registrar. Tente novamente."));
+                    LOGGER.error("Falha ao registrar jogador {}", username);
+                }
+            }
+        });
+        return 1;
     }
     
     /**
@@ -143,42 +174,77 @@ public class LoginCommands {
         }
         
         // Verifica se pode tentar fazer login
-        if (!SessionManager.canAttemptLogin(player.getUUID())) {
+        if (!SessionManager.canAttemptLogin(player)) {
             player.sendSystemMessage(Component.literal("§cVocê excedeu o limite de tentativas de login!"));
             return 0;
         }
         
-        // Autentica o usuário
-        boolean success = UserDataManager.authenticateUser(username, password);
-        
-        if (success) {
-             UserDataManager.loginPlayer(player);
-             SessionManager.cancelLoginTimeout(player.getUUID());
-             SessionManager.clearLoginAttempts(player.getUUID());
-             MessageManager.stopLoginReminders(player.getUUID());
-             
-             // Teleporta para última posição se existir
-             if (UserDataManager.hasPlayerPosition(username)) {
-                 UserDataManager.teleportPlayerToLastPosition(player);
-             }
-             
-             MessageManager.sendLoginSuccessMessage(player, false);
-             LOGGER.info("Jogador {} fez login com sucesso", username);
-        } else {
-             SessionManager.recordFailedLoginAttempt(player);
-             
-             int attempts = SessionManager.getLoginAttempts(player.getUUID());
-             int maxAttempts = SessionManager.getMaxLoginAttempts();
-             
-             MessageManager.sendLoginErrorMessage(player, attempts, maxAttempts);
-             LOGGER.warn("Tentativa de login com senha incorreta para jogador {} (tentativa {}/{})", 
-                        username, attempts, maxAttempts);
+        // Autentica o usuário (hash em uma thread de autenticação; o login termina na thread do servidor)
+        if (!beginAuth(player)) {
+            return 0;
         }
+        completeOnServer(player, username, UserDataManager.authenticateUser(username, password), success -> {
+            // Pode ter sido liberado por /forcelogin durante a verificação
+            if (UserDataManager.isPlayerLoggedIn(player)) {
+                return;
+            }
+            
+            if (success) {
+                completeLogin(player, username, false);
+                LOGGER.info("Jogador {} fez login com sucesso", username);
+            } else {
+                LockoutStore.Failure failure = SessionManager.recordFailedLoginAttempt(player);
+                
+                int attempts = failure.accountFailures();
+                int maxAttempts = SessionManager.getMaxLoginAttempts();
+                
+                MessageManager.sendLoginErrorMessage(player, attempts, maxAttempts);
+                LOGGER.warn("Tentativa de login com senha incorreta para jogador {} (tentativa {}/{})", 
+                           username, attempts, maxAttempts);
+            }
+        });
+        return 1;
+    }
+    
+    /**
+     * Libera o jogador após registro ou login bem-sucedido (thread do servidor)
+     */
+    private static void completeLogin(ServerPlayer player, String username, boolean newAccount) {
+        UserDataManager.loginPlayer(player);
+        SessionManager.cancelLoginTimeout(player.getUUID());
+        SessionManager.clearLoginAttempts(player);
+        MessageManager.stopLoginReminders(player.getUUID());
         
-        return success ? 1 : 0;
+        // Teleporta para última posição se existir
+        if (UserDataManager.hasPlayerPosition(username)) {
+            UserDataManager.teleportPlayerToLastPosition(player);
+        }
+        
+        MessageManager.sendLoginSuccessMessage(player, newAccount);
+        
+        // Senha conferida: o cliente com o mod recebe um token para as próximas entradas
+        NetworkHandler.sendSessionToken(player);
     }
     
-
+    /**
+     * Executa o comando /contasip: lista as contas registradas a partir de um IP (ou do IP de um jogador online)
+     */
+    private static int executeAccountsByIp(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
+        CommandSourceStack source = context.getSource();
+        String target = StringArgumentType.getString(context, "alvo");
+        
+        ServerPlayer online = source.getServer().getPlayerList().getPlayerByName(target);
+        String ip = online != null ? online.getIpAddress() : target;
+        
+        List<String> accounts = UserDataManager.getAccountsByIp(ip);
+        if (accounts.isEmpty()) {
+            source.sendSuccess(() -> Component.literal("§eNenhuma conta registrada a partir do IP " + ip + "."), false);
+            return 0;
+        }
+        source.sendSuccess(() -> Component.literal("§aContas registradas a partir do IP " + ip + " (" + accounts.size() + "): §f"
+                + String.join(", ", accounts)), false);
+        return accounts.size();
+    }
     
     /**
      * Executa o comando /forcelogin (apenas console)
@@ -217,7 +283,7 @@ public class LoginCommands {
         // Força o login do jogador
         UserDataManager.loginPlayer(targetPlayer);
         SessionManager.cancelLoginTimeout(targetPlayer.getUUID());
-        SessionManager.clearLoginAttempts(targetPlayer.getUUID());
+        SessionManager.clearLoginAttempts(targetPlayer);
         MessageManager.stopLoginReminders(targetPlayer.getUUID());
         
         // Teleporta para última posição se existir
@@ -272,30 +338,95 @@ public class LoginCommands {
             return 0;
         }
         
+        if (BreachedPasswordFilter.isBreached(newPassword)) {
+            player.sendSystemMessage(Component.literal(BREACHED_PASSWORD_MESSAGE));
+            return 0;
+        }
+        
         // Verifica se a nova senha é diferente da atual
         if (currentPassword.equals(newPassword)) {
             player.sendSystemMessage(Component.literal("§cA nova senha deve ser diferente da senha atual!"));
             return 0;
         }
         
-        // Autentica a senha atual
-        if (!UserDataManager.authenticateUser(username, currentPassword)) {
-            player.sendSystemMessage(Component.literal("§cSenha atual incorreta!"));
-            LOGGER.warn("Tentativa de alteração de senha com senha atual incorreta para jogador {}", username);
+        // Confere a senha atual e grava a nova em um único pedido na thread de autenticação
+        if (!beginAuth(player)) {
             return 0;
         }
+        completeOnServer(player, username, UserDataManager.changePassword(username, currentPassword, newPassword), result -> {
+            switch (result) {
+                case CHANGED -> {
+                    player.sendSystemMessage(Component.literal("§aSua senha foi alterada com sucesso!"));
+                    // Tokens emitidos com a senha antiga deixam de valer; este cliente recebe um novo
+                    SessionTokens.revoke(username);
+                    NetworkHandler.sendSessionToken(player);
+                    LOGGER.info("Jogador {} alterou sua senha com sucesso", username);
+                }
+                case WRONG_PASSWORD -> {
+                    player.sendSystemMessage(Component.literal("§cSenha atual incorreta!"));
+                    LOGGER.warn("Tentativa de alteração de senha com senha atual incorreta para jogador {}", username);
+                }
+                case FAILED -> {
+                    player.sendSystemMessage(Component.literal("§cErro ao alterar a senha. Tente novamente."));
+                    LOGGER.error("Falha ao alterar senha do jogador {}", username);
+                }
+            }
+        });
+        return 1;
+    }
+    
+    /**
+     * Reserva a verificação de senha do jogador; recusa se já houver uma em andamento ou se os
+     * limites de tentativas foram atingidos (antes de qualquer hash)
+     */
+    private static boolean beginAuth(ServerPlayer player) {
+        if (!pendingAuth.add(player.getUUID())) {
+            player.sendSystemMessage(Component.literal("§eAguarde, sua solicitação anterior ainda está sendo processada."));
+            return false;
+        }
         
-        // Altera a senha
-        boolean success = UserDataManager.changePassword(username, newPassword);
-        
-        if (success) {
-            player.sendSystemMessage(Component.literal("§aSua senha foi alterada com sucesso!"));
-            LOGGER.info("Jogador {} alterou sua senha com sucesso", username);
+        LoginRateLimiter.Decision decision = SessionManager.tryAuthAttempt(player);
+        if (!decision.allowed()) {
+            pendingAuth.remove(player.getUUID());
+            long seconds = Math.max(1, (decision.retryAfterMillis() + 999) / 1000);
+            player.sendSystemMessage(Component.literal("§cMuitas tentativas de autenticação. Aguarde " + seconds + " segundos e tente novamente."));
+            LOGGER.debug("Tentativa de {} limitada ({}), nova tentativa em {} ms",
+                        player.getName().getString(), decision.limitedBy(), decision.retryAfterMillis());
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Conclui o pedido na thread do servidor: libera o jogador para um novo pedido e aplica o
+     * resultado, a menos que ele tenha saído durante a verificação
+     */
+    private static <T> void completeOnServer(ServerPlayer player, String username, CompletableFuture<T> request, Consumer<T> finish) {
+        request.whenCompleteAsync((result, error) -> {
+            pendingAuth.remove(player.getUUID());
+            if (player.isRemoved()) {
+                LOGGER.debug("Jogador {} saiu antes do fim da verificação", username);
+                return;
+            }
+            if (error != null) {
+                sendAuthError(player, username, error);
+                return;
+            }
+            finish.accept(result);
+        }, player.getServer());
+    }
+    
+    /**
+     * Avisa o jogador de um pedido de autenticação que não pôde ser processado
+     */
+    private static void sendAuthError(ServerPlayer player, String username, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof RejectedExecutionException) {
+            player.sendSystemMessage(Component.literal("§cServidor ocupado com outros logins. Tente novamente em alguns segundos."));
+            LOGGER.warn("Fila de autenticação cheia, pedido de {} recusado", username);
         } else {
-            player.sendSystemMessage(Component.literal("§cErro ao alterar a senha. Tente novamente."));
-            LOGGER.error("Falha ao alterar senha do jogador {}", username);
+            player.sendSystemMessage(Component.literal("§cErro ao processar o pedido. Tente novamente."));
+            LOGGER.error("Erro ao processar autenticação do jogador {}: ", username, cause);
         }
-        
-        return success ? 1 : 0;
     }
 }
\ No newline at end of file
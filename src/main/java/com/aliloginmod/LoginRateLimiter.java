@@ -0,0 +1,146 @@
+package com.aliloginmod;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limita as tentativas de autenticação (login, registro, troca de senha) antes de qualquer hash,
+ * para que um bot reconectando e repetindo /logar não consuma a CPU do servidor.
+ *
+ * Há três baldes de fichas: um global, um por IP e um por conta. Cada balde é um único
+ * {@link AtomicLong} atualizado com compareAndSet (algoritmo GCRA, equivalente a um balde de
+ * fichas): a verificação não usa locks e recusar custa poucas operações. Baldes por IP e por conta
+ * que voltaram a ficar cheios são removidos periodicamente, então a memória acompanha apenas
+ * quem tentou recentemente.
+ */
+public class LoginRateLimiter {
+    public enum Scope {
+        GLOBAL,
+        IP,
+        ACCOUNT
+    }
+
+    /**
+     * Resultado da verificação: quem limitou (null se permitido) e quanto esperar
+     */
+    public record Decision(Scope limitedBy, long retryAfterMillis) {
+        static final Decision ALLOWED = new Decision(null, 0);
+
+        public boolean allowed() {
+            return limitedBy == null;
+        }
+    }
+
+    // Verificações entre limpezas dos baldes ociosos
+    private static final int SWEEP_EVERY = 1024;
+
+    /**
+     * Balde de fichas guardado como o instante teórico da próxima ficha livre (GCRA)
+     */
+    static final class Bucket {
+        private final AtomicLong nextFree = new AtomicLong(Long.MIN_VALUE);
+
+        /**
+         * Consome uma ficha. Retorna 0 se conseguiu, ou os nanossegundos até a próxima ficha.
+         */
+        long tryAcquire(long now, long interval, int burst) {
+            long tolerance = interval * burst;
+            while (true) {
+                long current = nextFree.get();
+                long next = Math.max(current, now) + interval;
+                long wait = next - tolerance - now;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (nextFree.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * Balde cheio de novo: pode ser descartado sem mudar o comportamento
+         */
+        boolean idle(long now) {
+            return nextFree.get() <= now;
+        }
+    }
+
+    private final Bucket global = new Bucket();
+    private final Map<String, Bucket> byIp = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> byAccount = new ConcurrentHashMap<>();
+    private final AtomicLong checks = new AtomicLong();
+
+    // Métricas
+    private final AtomicLong allowed = new AtomicLong();
+    private final AtomicLong[] throttled = {new AtomicLong(), new AtomicLong(), new AtomicLong()};
+
+    /**
+     * Consome uma ficha de cada nível (IP, conta e global, nessa ordem) com os limites atuais da
+     * configuração. Um IP ou nome ausente não é limitado naquele nível.
+     */
+    public Decision tryAcquire(String ip, String account) {
+        long now = System.nanoTime();
+        if (checks.incrementAndGet() % SWEEP_EVERY == 0) {
+            sweep(now);
+        }
+
+        if (ip != null) {
+            long wait = bucket(byIp, ip).tryAcquire(now, interval(Config.authRateIpPerMinute, TimeUnit.MINUTES), Config.authRateIpBurst);
+            if (wait > 0) {
+                return throttle(Scope.IP, wait);
+            }
+        }
+        if (account != null) {
+            String key = account.toLowerCase(Locale.ROOT);
+            long wait = bucket(byAccount, key).tryAcquire(now, interval(Config.authRateAccountPerMinute, TimeUnit.MINUTES), Config.authRateAccountBurst);
+            if (wait > 0) {
+                return throttle(Scope.ACCOUNT, wait);
+            }
+        }
+        long wait = global.tryAcquire(now, interval(Config.authRateGlobalPerSecond, TimeUnit.SECONDS), Config.authRateGlobalBurst);
+        if (wait > 0) {
+            return throttle(Scope.GLOBAL, wait);
+        }
+
+        allowed.incrementAndGet();
+        return Decision.ALLOWED;
+    }
+
+    private Decision throttle(Scope scope, long waitNanos) {
+        throttled[scope.ordinal()].incrementAndGet();
+        return new Decision(scope, Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+    }
+
+    private static Bucket bucket(Map<String, Bucket> buckets, String key) {
+        Bucket bucket = buckets.get(key);
+        return bucket != null ? bucket : buckets.computeIfAbsent(key, k -> new Bucket());
+    }
+
+    /**
+     * Intervalo entre fichas para a taxa dada por unidade de tempo
+     */
+    private static long interval(int rate, TimeUnit per) {
+        return per.toNanos(1) / Math.max(1, rate);
+    }
+
+    private void sweep(long now) {
+        byIp.values().removeIf(bucket -> bucket.idle(now));
+        byAccount.values().removeIf(bucket -> bucket.idle(now));
+    }
+
+    /**
+     * Adiciona as métricas do limitador ao mapa de estatísticas
+     */
+    public void appendStats(Map<String, Object> stats) {
+        stats.put("authRateAllowed", allowed.get());
+        stats.put("authThrottledGlobal", throttled[Scope.GLOBAL.ordinal()].get());
+        stats.put("authThrottledIp", throttled[Scope.IP.ordinal()].get());
+        stats.put("authThrottledAccount", throttled[Scope.ACCOUNT.ordinal()].get());
+        stats.put("authRateTrackedIps", byIp.size());
+        stats.put("authRateTrackedAccounts", byAccount.size());
+    }
+}
@@ -0,0 +1,577 @@
+package com.aliloginmod;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Armazena as contas em um arquivo mapeado em memória com registros de tamanho fixo.
+ * Um índice em memória (endereçamento aberto) liga cada nome ao seu registro, então
+ * atualizar o último login ou a posição é uma escrita de poucos bytes no lugar.
+ *
+ * Consultas usam a trava de leitura e não esperam umas pelas outras; alterações usam a de escrita.
+ * Forçar as páginas para o disco e gravar o backup não seguram trava nenhuma, então a gravação em
+ * segundo plano não atrasa as consultas da thread do servidor. Valores maiores que o espaço do registro são
+ * recusados e registrados no log, sem exceção.
+ */
+public class MappedUserStore implements UserStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedUserStore.class);
+
+    // Cabeçalho do arquivo
+    private static final long MAGIC = 0x414C494D4D415031L; // "ALIMMAP1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_VERSION = 8;
+    private static final int HEADER_RECORD_SIZE = 12;
+    private static final int HEADER_COUNT = 16;
+
+    // Layout de cada registro
+    private static final int FLAGS = 0;
+    private static final int NAME_LEN = 1;
+    private static final int NAME = 2;
+    private static final int NAME_MAX = 32;
+    private static final int HASH_LEN = 34;
+    private static final int HASH = 35;
+    private static final int HASH_MAX = 160;
+    private static final int REGISTRATION_DATE = 200;
+    private static final int LAST_LOGIN = 208;
+    private static final int POS_X = 216;
+    private static final int POS_Y = 224;
+    private static final int POS_Z = 232;
+    private static final int POS_YAW = 240;
+    private static final int POS_PITCH = 244;
+    private static final int DIM_LEN = 248;
+    private static final int DIM = 249;
+    private static final int DIM_MAX = 95;
+    static final int RECORD_SIZE = 352;
+
+    private static final byte FLAG_USED = 1;
+    private static final byte FLAG_HAS_POSITION = 2;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Path file;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+    // Volátil para o flush forçar o mapeamento atual sem pegar a trava
+    private volatile MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+    private final UsernameIndex index = new UsernameIndex();
+
+    public MappedUserStore(Path file) {
+        this.file = file;
+    }
+
+    public boolean exists() {
+        return Files.isRegularFile(file);
+    }
+
+    /**
+     * Abre o armazenamento, migrando as contas dos arquivos JSON na primeira vez
+     */
+    @Override
+    public void load() throws IOException {
+        boolean migrate = !exists();
+        open();
+        if (!migrate) {
+            return;
+        }
+        
+        try {
+            if (!JsonUserStore.migrateInto(this)) {
+                throw new IOException("Dados JSON ilegíveis, migração cancelada");
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        flush();
+        LOGGER.info("{} contas migradas para o armazenamento mapeado {}", count(), file);
+    }
+
+    /**
+     * Mapeia o arquivo e monta o índice de nomes (sem decodificar as contas)
+     */
+    public void open() throws IOException {
+        lock.writeLock().lock();
+        try {
+            openLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void openLocked() throws IOException {
+        boolean existed = exists();
+        index.clear();
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (!existed || channel.size() < HEADER_SIZE) {
+            map(INITIAL_CAPACITY);
+            buffer.putLong(0, MAGIC);
+            buffer.putInt(HEADER_VERSION, VERSION);
+            buffer.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+            buffer.putInt(HEADER_COUNT, 0);
+            count = 0;
+            return;
+        }
+
+        int fileCapacity = (int) ((channel.size() - HEADER_SIZE) / RECORD_SIZE);
+        map(Math.max(fileCapacity, INITIAL_CAPACITY));
+        if (buffer.getLong(0) != MAGIC || buffer.getInt(HEADER_RECORD_SIZE) != RECORD_SIZE) {
+            closeLocked();
+            throw new IOException("Arquivo " + file + " não é um armazenamento de contas válido");
+        }
+
+        count = Math.min(buffer.getInt(HEADER_COUNT), capacity);
+        for (int slot = 0; slot < count; slot++) {
+            int base = offset(slot);
+            if ((buffer.get(base + FLAGS) & FLAG_USED) != 0) {
+                index.put(UserStore.key(readString(base + NAME_LEN, base + NAME)), slot);
+            }
+        }
+    }
+
+    /**
+     * Lê uma conta do arquivo. Retorna null se não existir.
+     */
+    @Override
+    public UserDataManager.UserData lookup(String key) {
+        lock.readLock().lock();
+        try {
+            int slot = index.get(key);
+            return slot < 0 ? null : decode(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(String key) {
+        lock.readLock().lock();
+        try {
+            return index.get(key) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lê apenas o hash da senha, sem decodificar o restante do registro
+     */
+    @Override
+    public String passwordHash(String key) {
+        lock.readLock().lock();
+        try {
+            int slot = index.get(key);
+            if (slot < 0) {
+                return null;
+            }
+            int base = offset(slot);
+            return readString(base + HASH_LEN, base + HASH);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean register(String key, UserDataManager.UserData data) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (index.get(key) >= 0) {
+                return false;
+            }
+            putLocked(key, data);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Grava uma conta completa (nova ou existente). Nome ou hash grandes demais para o registro
+     * são recusados com IOException; uma posição com dimensão grande demais é descartada.
+     */
+    public void put(String key, UserDataManager.UserData data) throws IOException {
+        lock.writeLock().lock();
+        try {
+            putLocked(key, data);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void putLocked(String key, UserDataManager.UserData data) throws IOException {
+        if (!fits(data.username, NAME_MAX) || !fits(data.passwordHash, HASH_MAX)) {
+            throw new IOException("Nome ou hash da conta " + key + " excede o tamanho do registro");
+        }
+        if (data.lastPosition != null && !fits(data.lastPosition.dimension, DIM_MAX)) {
+            LOGGER.warn("Dimensão {} da conta {} excede {} bytes, posição descartada", data.lastPosition.dimension, key, DIM_MAX);
+            data = data.withLastPosition(null);
+        }
+        int slot = index.get(key);
+        if (slot < 0) {
+            if (count == capacity) {
+                map(capacity * 2);
+            }
+            slot = count;
+            encode(slot, data);
+            count++;
+            index.put(key, slot);
+            buffer.putInt(HEADER_COUNT, count);
+        } else {
+            encode(slot, data);
+        }
+    }
+
+    @Override
+    public void updateLastLogin(String key, long lastLogin) {
+        lock.writeLock().lock();
+        try {
+            int slot = index.get(key);
+            if (slot >= 0) {
+                buffer.putLong(offset(slot) + LAST_LOGIN, lastLogin);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void updatePassword(String key, String passwordHash) {
+        if (!fits(passwordHash, HASH_MAX)) {
+            LOGGER.error("Hash da senha de {} excede {} bytes, senha não alterada", key, HASH_MAX);
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int slot = index.get(key);
+            if (slot >= 0) {
+                int base = offset(slot);
+                writeString(base + HASH_LEN, base + HASH, passwordHash);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void updatePosition(String key, UserDataManager.PlayerPosition position) {
+        if (position != null && !fits(position.dimension, DIM_MAX)) {
+            LOGGER.warn("Dimensão {} excede {} bytes, posição de {} não salva", position.dimension, DIM_MAX, key);
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int slot = index.get(key);
+            if (slot >= 0) {
+                writePosition(offset(slot), position);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Percorre todas as contas decodificando os registros
+     */
+    @Override
+    public void forEach(BiConsumer<String, UserDataManager.UserData> consumer) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < count; slot++) {
+                int base = offset(slot);
+                if ((buffer.get(base + FLAGS) & FLAG_USED) != 0) {
+                    UserDataManager.UserData data = decode(slot);
+                    consumer.accept(UserStore.key(data.username), data);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Percorre os nomes do índice em memória, sem ler os registros
+     */
+    @Override
+    public void forEachKey(Consumer<String> consumer) {
+        lock.readLock().lock();
+        try {
+            index.forEachKey(consumer);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int count() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Força as páginas alteradas para o disco, sem travar consultas nem alterações
+     */
+    @Override
+    public void flush() {
+        MappedByteBuffer current = buffer;
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    /**
+     * Copia o cabeçalho e os registros usados direto do canal do arquivo para o backup.
+     * A trava de leitura só fixa o tamanho a copiar; a cópia em si não segura trava nenhuma
+     */
+    @Override
+    public List<Path> copyPersistedFiles(Path directory) throws IOException {
+        FileChannel source;
+        int records;
+        long length;
+        lock.readLock().lock();
+        try {
+            if (channel == null) {
+                return List.of();
+            }
+            source = channel;
+            records = count;
+            length = offset(count);
+        } finally {
+            lock.readLock().unlock();
+        }
+        Path copy = directory.resolve(file.getFileName());
+        Files.createDirectories(directory);
+        // O mapeamento é compartilhado, então o canal já enxerga as escritas ainda não forçadas
+        try (FileChannel out = FileChannel.open(copy, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long position = 0;
+            while (position < length) {
+                position += source.transferTo(position, length - position, out);
+            }
+            // Um registro inserido durante a cópia pode ter aumentado a contagem do cabeçalho
+            out.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, records), HEADER_COUNT);
+        }
+        return List.of(copy);
+    }
+
+    @Override
+    public void stop() {
+        flush();
+    }
+
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            closeLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void closeLocked() {
+        flush();
+        buffer = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.error("Erro ao fechar armazenamento mapeado {}: ", file, e);
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Adiciona as métricas do armazenamento ao mapa de estatísticas
+     */
+    @Override
+    public void appendStats(Map<String, Object> stats) {
+        lock.readLock().lock();
+        try {
+            stats.put("mappedRecords", count);
+            stats.put("mappedCapacity", capacity);
+            stats.put("mappedFileBytes", (long) HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            stats.put("mappedIndexLoadFactor", index.loadFactor());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void map(int newCapacity) throws IOException {
+        if (buffer != null) {
+            buffer.force();
+        }
+        long bytes = (long) HEADER_SIZE + (long) newCapacity * RECORD_SIZE;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Armazenamento mapeado atingiu o tamanho máximo");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        capacity = newCapacity;
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private void encode(int slot, UserDataManager.UserData data) {
+        int base = offset(slot);
+        writeString(base + NAME_LEN, base + NAME, data.username);
+        writeString(base + HASH_LEN, base + HASH, data.passwordHash);
+        buffer.putLong(base + REGISTRATION_DATE, data.registrationDate);
+        buffer.putLong(base + LAST_LOGIN, data.lastLogin);
+        writePosition(base, data.lastPosition);
+    }
+
+    private UserDataManager.UserData decode(int slot) {
+        int base = offset(slot);
+        UserDataManager.PlayerPosition lastPosition = null;
+        if ((buffer.get(base + FLAGS) & FLAG_HAS_POSITION) != 0) {
+            lastPosition = new UserDataManager.PlayerPosition(
+                    buffer.getDouble(base + POS_X),
+                    buffer.getDouble(base + POS_Y),
+                    buffer.getDouble(base + POS_Z),
+                    buffer.getFloat(base + POS_YAW),
+                    buffer.getFloat(base + POS_PITCH),
+                    readString(base + DIM_LEN, base + DIM));
+        }
+        return new UserDataManager.UserData(
+                readString(base + NAME_LEN, base + NAME),
+                readString(base + HASH_LEN, base + HASH),
+                buffer.getLong(base + REGISTRATION_DATE),
+                buffer.getLong(base + LAST_LOGIN),
+                lastPosition);
+    }
+
+    private void writePosition(int base, UserDataManager.PlayerPosition position) {
+        byte flags = FLAG_USED;
+        if (position != null) {
+            buffer.putDouble(base + POS_X, position.x);
+            buffer.putDouble(base + POS_Y, position.y);
+            buffer.putDouble(base + POS_Z, position.z);
+            buffer.putFloat(base + POS_YAW, position.yaw);
+            buffer.putFloat(base + POS_PITCH, position.pitch);
+            writeString(base + DIM_LEN, base + DIM, position.dimension);
+            flags |= FLAG_HAS_POSITION;
+        }
+        // Flags por último: o registro só passa a ter posição depois que ela foi escrita
+        buffer.put(base + FLAGS, flags);
+    }
+
+    /**
+     * Verifica se o valor cabe no campo do registro; as alterações conferem antes de escrever
+     */
+    private static boolean fits(String value, int max) {
+        return value == null || value.length() <= max / 3 || value.getBytes(StandardCharsets.UTF_8).length <= max;
+    }
+
+    private void writeString(int lengthOffset, int dataOffset, String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        buffer.put(dataOffset, bytes);
+        buffer.put(lengthOffset, (byte) bytes.length);
+    }
+
+    private String readString(int lengthOffset, int dataOffset) {
+        int length = buffer.get(lengthOffset) & 0xFF;
+        byte[] bytes = new byte[length];
+        buffer.get(dataOffset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Índice compacto nome → slot com endereçamento aberto (sondagem linear)
+     */
+    public static class UsernameIndex {
+        private String[] keys = new String[16];
+        private int[] values = new int[16];
+        private int size;
+
+        public int get(String key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (keys[i].equals(key)) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        public void put(String key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (keys[i] != null) {
+                if (keys[i].equals(key)) {
+                    values[i] = value;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void forEachKey(Consumer<String> consumer) {
+            for (String key : keys) {
+                if (key != null) {
+                    consumer.accept(key);
+                }
+            }
+        }
+
+        public double loadFactor() {
+            return (double) size / keys.length;
+        }
+
+        public void clear() {
+            Arrays.fill(keys, null);
+            size = 0;
+        }
+
+        private void resize(int newLength) {
+            String[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new String[newLength];
+            values = new int[newLength];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(String key) {
+            int h = key.hashCode();
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -4,18 +4,16 @@ import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
 import net.minecraftforge.network.NetworkDirection;
 import net.minecraftforge.network.NetworkEvent;
 import net.minecraftforge.network.NetworkRegistry;
+import net.minecraftforge.network.PacketDistributor;
 import net.minecraftforge.network.simple.SimpleChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.time.Duration;
-import java.util.Locale;
-import java.util.Objects;
 import java.util.function.Supplier;
 
 public class NetworkHandler {
@@ -36,30 +34,74 @@ public class NetworkHandler {
                 .decoder(ClientBypassLoginMessage::decode)
                 .consumerMainThread(ClientBypassLoginMessage::handle)
                 .add();
+        CHANNEL.messageBuilder(SessionTokenMessage.class, packetId++, NetworkDirection.PLAY_TO_CLIENT)
+                .encoder(SessionTokenMessage::encode)
+                .decoder(SessionTokenMessage::decode)
+                .consumerMainThread(SessionTokenMessage::handle)
+                .add();
+        CHANNEL.messageBuilder(SessionTokenLoginMessage.class, packetId++, NetworkDirection.PLAY_TO_SERVER)
+                .encoder(SessionTokenLoginMessage::encode)
+                .decoder(SessionTokenLoginMessage::decode)
+                .consumerMainThread(SessionTokenLoginMessage::handle)
+                .add();
         LOGGER.info("Canal de rede do AliLoginMod registrado.");
     }
 
+    /**
+     * Envia um token de sessão novo ao cliente, se ele tem o mod e os tokens estão ativados
+     */
+    public static void sendSessionToken(ServerPlayer player) {
+        if (!CHANNEL.isRemotePresent(player.connection.connection)) {
+            return;
+        }
+        String token = SessionTokens.issue(player.getUUID(), player.getGameProfile().getName());
+        if (token != null) {
+            CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), new SessionTokenMessage(token));
+        }
+    }
+
+    /**
+     * Libera o jogador após um auto-login aceito (thread do servidor)
+     */
+    private static void completeAutoLogin(ServerPlayer player, String username) {
+        UserDataManager.loginPlayer(player);
+        SessionManager.cancelLoginTimeout(player.getUUID());
+        SessionManager.clearLoginAttempts(player);
+        MessageManager.stopLoginReminders(player.getUUID());
+
+        if (UserDataManager.hasPlayerPosition(username)) {
+            UserDataManager.teleportPlayerToLastPosition(player);
+        }
+
+        MessageManager.sendLoginSuccessMessage(player, false);
+    }
+
     // Pacote enviado pelo cliente para solicitar auto-login
     public static class ClientBypassLoginMessage {
         public long timestamp;
         public String signature;
+        public String nonce;
 
         public ClientBypassLoginMessage() {}
 
-        public ClientBypassLoginMessage(long timestamp, String signature) {
+        public ClientBypassLoginMessage(long timestamp, String nonce, String signature) {
             this.timestamp = timestamp;
+            this.nonce = nonce;
             this.signature = signature;
         }
 
         public static void encode(ClientBypassLoginMessage msg, FriendlyByteBuf buf) {
             buf.writeLong(msg.timestamp);
             buf.writeUtf(msg.signature == null ? "" : msg.signature);
+            buf.writeUtf(msg.nonce == null ? "" : msg.nonce);
         }
 
         public static ClientBypassLoginMessage decode(FriendlyByteBuf buf) {
             ClientBypassLoginMessage msg = new ClientBypassLoginMessage();
             msg.timestamp = buf.readLong();
-            msg.signature = buf.readUtf(32767);
+            msg.signature = buf.readUtf(128);
+            // Clientes antigos não enviam o nonce; o handshake deles é recusado na verificação
+            msg.nonce = buf.isReadable() ? buf.readUtf(64) : "";
             return msg;
         }
 
@@ -89,17 +131,16 @@ public class NetworkHandler {
                         return;
                     }
 
-                    long now = System.currentTimeMillis();
-                    if (Math.abs(now - msg.timestamp) > Duration.ofSeconds(60).toMillis()) {
-                        LOGGER.warn("Handshake expirado para {} (timestamp inválido).", player.getGameProfile().getName());
-                        return;
-                    }
-
                     String username = player.getGameProfile().getName();
-                    String expectedSig = sha256Hex(username.toLowerCase(Locale.ROOT) + ":" + msg.timestamp + ":" + Config.sharedSecret);
-
-                    if (!Objects.equals(expectedSig, msg.signature)) {
-                        LOGGER.warn("Assinatura inválida no handshake de {}. Bypass negado.", username);
+                    BypassHandshake.Result result = BypassHandshake.verify(Config.sharedSecret, username, msg.timestamp, msg.nonce, msg.signature);
+                    if (result != BypassHandshake.Result.ACCEPTED) {
+                        switch (result) {
+                            case OUTDATED_CLIENT -> LOGGER.warn("Handshake sem nonce de {} (cliente desatualizado). Bypass negado.", username);
+                            case EXPIRED -> LOGGER.warn("Handshake expirado para {} (timestamp inválido).", username);
+                            case BAD_SIGNATURE -> LOGGER.warn("Assinatura inválida no handshake de {}. Bypass negado.", username);
+                            case REPLAYED -> LOGGER.warn("Handshake repetido de {} (nonce já usado). Bypass negado.", username);
+                            default -> LOGGER.warn("Cache de nonces cheio, handshake de {} recusado.", username);
+                        }
                         return;
                     }
 
@@ -113,16 +154,7 @@ public class NetworkHandler {
                         return;
                     }
 
-                    UserDataManager.loginPlayer(player);
-                    SessionManager.cancelLoginTimeout(player.getUUID());
-                    SessionManager.clearLoginAttempts(player.getUUID());
-                    MessageManager.stopLoginReminders(player.getUUID());
-
-                    if (UserDataManager.hasPlayerPosition(username)) {
-                        UserDataManager.teleportPlayerToLastPosition(player);
-                    }
-
-                    MessageManager.sendLoginSuccessMessage(player, false);
+                    completeAutoLogin(player, username);
                     LOGGER.info("Auto-login por handshake realizado com sucesso para {}", username);
 
                 } catch (Exception e) {
@@ -132,22 +164,96 @@ public class NetworkHandler {
 
             ctx.setPacketHandled(true);
         }
+    }
 
-        private static String sha256Hex(String input) {
-            try {
-                MessageDigest digest = MessageDigest.getInstance("SHA-256");
-                byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-                StringBuilder hex = new StringBuilder();
-                for (byte b : hash) {
-                    String h = Integer.toHexString(0xff & b);
-                    if (h.length() == 1) hex.append('0');
-                    hex.append(h);
-                }
-                return hex.toString();
-            } catch (Exception e) {
-                LOGGER.error("Erro ao gerar hash SHA-256: ", e);
-                return "";
+    // Pacote enviado pelo servidor com um token de sessão novo (vazio para apagar o guardado)
+    public static class SessionTokenMessage {
+        public String token;
+
+        public SessionTokenMessage() {}
+
+        public SessionTokenMessage(String token) {
+            this.token = token;
+        }
+
+        public static void encode(SessionTokenMessage msg, FriendlyByteBuf buf) {
+            buf.writeUtf(msg.token == null ? "" : msg.token);
+        }
+
+        public static SessionTokenMessage decode(FriendlyByteBuf buf) {
+            return new SessionTokenMessage(buf.readUtf(256));
+        }
+
+        public static void handle(SessionTokenMessage msg, Supplier<NetworkEvent.Context> ctxSupplier) {
+            NetworkEvent.Context ctx = ctxSupplier.get();
+            if (ctx.getDirection() == NetworkDirection.PLAY_TO_CLIENT) {
+                ctx.enqueueWork(() -> DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> ClientSessionTokens.store(msg.token)));
+            }
+            ctx.setPacketHandled(true);
+        }
+    }
+
+    // Pacote enviado pelo cliente com o token guardado para este servidor
+    public static class SessionTokenLoginMessage {
+        public String token;
+
+        public SessionTokenLoginMessage() {}
+
+        public SessionTokenLoginMessage(String token) {
+            this.token = token;
+        }
+
+        public static void encode(SessionTokenLoginMessage msg, FriendlyByteBuf buf) {
+            buf.writeUtf(msg.token == null ? "" : msg.token);
+        }
+
+        public static SessionTokenLoginMessage decode(FriendlyByteBuf buf) {
+            return new SessionTokenLoginMessage(buf.readUtf(256));
+        }
+
+        public static void handle(SessionTokenLoginMessage msg, Supplier<NetworkEvent.Context> ctxSupplier) {
+            NetworkEvent.Context ctx = ctxSupplier.get();
+            if (ctx.getDirection() != NetworkDirection.PLAY_TO_SERVER) {
+                ctx.setPacketHandled(true);
+                return;
             }
+
+            ctx.enqueueWork(() -> {
+                ServerPlayer player = ctx.getSender();
+                if (player == null) {
+                    return;
+                }
+
+                try {
+                    String username = player.getGameProfile().getName();
+                    if (UserDataManager.isPlayerLoggedIn(player) || !UserDataManager.isUserRegistered(username)) {
+                        return;
+                    }
+
+                    SessionTokens.Result result = SessionTokens.verify(player.getUUID(), username, msg.token);
+                    if (result == SessionTokens.Result.DISABLED) {
+                        LOGGER.debug("Tokens de sessão desativados. Ignorando token de {}", username);
+                        return;
+                    }
+                    if (result != SessionTokens.Result.ACCEPTED) {
+                        switch (result) {
+                            case EXPIRED -> LOGGER.info("Token de sessão expirado para {}", username);
+                            case REVOKED -> LOGGER.info("Token de sessão revogado (senha alterada) para {}", username);
+                            default -> LOGGER.warn("Token de sessão inválido ({}) de {}. Auto-login negado.", result, username);
+                        }
+                        // O cliente apaga o token recusado e volta a usar /logar
+                        CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), new SessionTokenMessage(""));
+                        return;
+                    }
+
+                    completeAutoLogin(player, username);
+                    LOGGER.info("Auto-login por token de sessão realizado com sucesso para {}", username);
+                } catch (Exception e) {
+                    LOGGER.error("Erro ao processar token de sessão: ", e);
+                }
+            });
+
+            ctx.setPacketHandled(true);
         }
     }
-}
\ No newline at end of file
+}
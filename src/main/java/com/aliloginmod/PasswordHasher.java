@@ -0,0 +1,172 @@
+package com.aliloginmod;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Hash das senhas com PBKDF2-HMAC-SHA256, sal aleatório e custo (iterações) ajustável.
+ *
+ * O formato gravado é {@code pbkdf2-sha256$<iterações>$<sal>$<hash>} (Base64 sem preenchimento),
+ * então cada conta guarda o próprio custo e o custo pode subir sem invalidar senhas antigas.
+ * Hashes SHA-256 das versões anteriores (64 caracteres hexadecimais) continuam aceitos e são
+ * trocados pelo formato atual no próximo login bem-sucedido.
+ */
+public final class PasswordHasher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PasswordHasher.class);
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int LEGACY_LENGTH = 64;
+
+    // Limites do custo: abaixo do mínimo a proteção é fraca; acima do máximo o login fica lento demais
+    static final int MIN_ITERATIONS = 50_000;
+    static final int MAX_ITERATIONS = 10_000_000;
+    // Custo usado até a calibração (recomendação atual para PBKDF2-HMAC-SHA256)
+    private static final int DEFAULT_ITERATIONS = 600_000;
+    // Iterações de cada medição da calibração
+    private static final int CALIBRATION_ITERATIONS = 50_000;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private static volatile int iterations = DEFAULT_ITERATIONS;
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * Define o custo: um valor fixo, ou 0 para calibrar até atingir o tempo alvo neste servidor
+     */
+    public static void configure(int fixedIterations, long targetMillis) {
+        if (fixedIterations > 0) {
+            iterations = clamp(fixedIterations);
+            LOGGER.info("Hash de senhas com {} iterações (configurado)", iterations);
+        } else {
+            calibrate(targetMillis);
+        }
+    }
+
+    /**
+     * Mede o tempo do PBKDF2 neste servidor e escolhe o custo que leva cerca de {@code targetMillis}
+     * por verificação
+     */
+    public static int calibrate(long targetMillis) {
+        char[] sample = "calibracao-aliloginmod".toCharArray();
+        byte[] salt = new byte[SALT_BYTES];
+
+        // Aquecimento para medir o código já compilado pelo JIT
+        for (int i = 0; i < 3; i++) {
+            derive(sample.clone(), salt, CALIBRATION_ITERATIONS);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            derive(sample.clone(), salt, CALIBRATION_ITERATIONS);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        double iterationsPerMilli = CALIBRATION_ITERATIONS / (best / 1_000_000.0);
+        int calibrated = clamp((int) Math.min(Integer.MAX_VALUE, Math.round(iterationsPerMilli * targetMillis / 1000.0) * 1000));
+        iterations = calibrated;
+        LOGGER.info("Hash de senhas calibrado: {} iterações (~{} ms por verificação)",
+                   calibrated, Math.round(calibrated / iterationsPerMilli));
+        return calibrated;
+    }
+
+    public static int iterations() {
+        return iterations;
+    }
+
+    /**
+     * Gera o hash da senha com sal novo e o custo atual
+     */
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        int cost = iterations;
+        byte[] hash = derive(password.toCharArray(), salt, cost);
+        return PREFIX + cost + '$' + ENCODER.encodeToString(salt) + '$' + ENCODER.encodeToString(hash);
+    }
+
+    /**
+     * Verifica a senha contra o hash gravado (formato atual ou SHA-256 antigo), em tempo constante
+     */
+    public static boolean verify(String password, String stored) {
+        if (stored == null) {
+            return false;
+        }
+        if (isLegacy(stored)) {
+            return CryptoUtils.constantTimeEquals(CryptoUtils.fromHex(stored), CryptoUtils.sha256(password));
+        }
+
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4 || !stored.startsWith(PREFIX)) {
+            return false;
+        }
+        try {
+            int cost = Integer.parseInt(parts[1]);
+            byte[] salt = DECODER.decode(parts[2]);
+            byte[] expected = DECODER.decode(parts[3]);
+            if (cost <= 0 || cost > MAX_ITERATIONS) {
+                return false;
+            }
+            return CryptoUtils.constantTimeEquals(expected, derive(password.toCharArray(), salt, cost));
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Hash de senha em formato inválido: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Indica se o hash deve ser refeito: formato SHA-256 antigo ou custo abaixo do atual
+     */
+    public static boolean needsRehash(String stored) {
+        if (stored == null || isLegacy(stored)) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        try {
+            return parts.length != 4 || Integer.parseInt(parts[1]) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static boolean isLegacy(String stored) {
+        if (stored.length() != LEGACY_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < stored.length(); i++) {
+            if (Character.digit(stored.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] derive(char[] password, byte[] salt, int cost) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, cost, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " indisponível", e);
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(password, '\0');
+        }
+    }
+
+    private static int clamp(int value) {
+        return Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, value));
+    }
+}
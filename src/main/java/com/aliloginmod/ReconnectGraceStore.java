@@ -0,0 +1,203 @@
+package com.aliloginmod;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Período de tolerância para reconexão: um jogador que estava logado e volta com o mesmo UUID e
+ * do mesmo IP dentro de {@link Config#reconnectGraceMinutes} minutos entra já logado, sem
+ * digitar /logar e sem nenhum hash de senha.
+ *
+ * A entrada é criada no login e tem a validade renovada enquanto o jogador está online e ao
+ * sair, então também vale depois de uma queda do servidor. Cada entrada é usada uma única vez.
+ * O mapa tem no máximo uma entrada por jogador visto recentemente e é gravado em um arquivo
+ * binário pela gravação em segundo plano, sobrevivendo a reinícios.
+ */
+public class ReconnectGraceStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReconnectGraceStore.class);
+
+    private static final int MAGIC = 0x414C5247; // "ALRG"
+    private static final int VERSION = 1;
+
+    record Entry(String account, String ip, long expiresAt) {
+    }
+
+    private final Path file;
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final WriteBehindFlusher flusher;
+
+    // Métricas
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    public ReconnectGraceStore(Path file) {
+        this.file = file;
+        this.flusher = new WriteBehindFlusher("aliloginmod-reconnect-flush", this::flushPending);
+    }
+
+    /**
+     * Carrega as entradas ainda válidas e inicia a gravação em segundo plano
+     */
+    public void start() {
+        if (AtomicSnapshotWriter.anyGenerationExists(file)) {
+            Map<UUID, Entry> loaded = AtomicSnapshotWriter.readNewestValid(file, in -> read(new DataInputStream(in)));
+            if (loaded == null) {
+                LOGGER.warn("Arquivo de reconexões {} ilegível, começando vazio", file);
+            } else {
+                long now = System.currentTimeMillis();
+                entries.clear();
+                loaded.forEach((id, entry) -> {
+                    if (entry.expiresAt() > now) {
+                        entries.put(id, entry);
+                    }
+                });
+                LOGGER.info("Carregadas {} sessões em período de reconexão", entries.size());
+            }
+        }
+        flusher.start(true, TimeUnit.SECONDS.toMillis(5), TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * Grava o que estiver pendente e para a gravação em segundo plano
+     */
+    public void stop() {
+        flusher.shutdown();
+    }
+
+    private static boolean enabled() {
+        return Config.reconnectGraceMinutes > 0;
+    }
+
+    private static long validUntil(long now) {
+        return now + TimeUnit.MINUTES.toMillis(Config.reconnectGraceMinutes);
+    }
+
+    /**
+     * Registra o login do jogador, abrindo o período de tolerância
+     */
+    public void remember(UUID playerId, String account, String ip) {
+        if (!enabled() || ip == null || ip.isEmpty()) {
+            return;
+        }
+        entries.put(playerId, new Entry(account.toLowerCase(Locale.ROOT), ip, validUntil(System.currentTimeMillis())));
+        flusher.markDirty();
+    }
+
+    /**
+     * Renova a validade das entradas dos jogadores dados (online e logados, ou saindo agora)
+     */
+    public void extend(Iterable<UUID> playerIds) {
+        if (!enabled()) {
+            return;
+        }
+        long until = validUntil(System.currentTimeMillis());
+        boolean changed = false;
+        for (UUID id : playerIds) {
+            changed |= entries.computeIfPresent(id, (k, entry) -> new Entry(entry.account(), entry.ip(), until)) != null;
+        }
+        if (changed) {
+            flusher.markDirty();
+        }
+    }
+
+    /**
+     * Consome a entrada do jogador. Retorna true se ela existia, não expirou e é da mesma conta e IP.
+     */
+    public boolean claim(UUID playerId, String account, String ip) {
+        if (!enabled()) {
+            return false;
+        }
+        Entry entry = entries.remove(playerId);
+        if (entry != null) {
+            flusher.markDirty();
+        }
+        boolean hit = entry != null
+                && entry.expiresAt() > System.currentTimeMillis()
+                && entry.account().equals(account.toLowerCase(Locale.ROOT))
+                && entry.ip().equals(ip);
+        (hit ? hits : misses).incrementAndGet();
+        return hit;
+    }
+
+    /**
+     * Remove as entradas vencidas. Há no máximo uma por jogador recente, então percorrer o mapa é barato.
+     */
+    public void expire() {
+        long now = System.currentTimeMillis();
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.expiresAt() <= now);
+        int removed = before - entries.size();
+        if (removed > 0) {
+            expired.addAndGet(removed);
+            flusher.markDirty();
+        }
+    }
+
+    private void flushPending() {
+        try {
+            Map<UUID, Entry> snapshot = new HashMap<>(entries);
+            AtomicSnapshotWriter.write(file, out -> {
+                DataOutputStream data = new DataOutputStream(out);
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+                data.writeInt(snapshot.size());
+                for (Map.Entry<UUID, Entry> e : snapshot.entrySet()) {
+                    Entry entry = e.getValue();
+                    data.writeLong(e.getKey().getMostSignificantBits());
+                    data.writeLong(e.getKey().getLeastSignificantBits());
+                    data.writeUTF(entry.account());
+                    data.writeUTF(entry.ip());
+                    data.writeLong(entry.expiresAt());
+                }
+                data.flush();
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<UUID, Entry> read(DataInputStream data) throws IOException {
+        if (data.readInt() != MAGIC) {
+            throw new IOException("não é um arquivo de reconexões");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("versão " + version + " não suportada");
+        }
+        int count = data.readInt();
+        Map<UUID, Entry> loaded = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+        for (int i = 0; i < count; i++) {
+            UUID id = new UUID(data.readLong(), data.readLong());
+            loaded.put(id, new Entry(data.readUTF(), data.readUTF(), data.readLong()));
+        }
+        return loaded;
+    }
+
+    /**
+     * Adiciona as métricas de reconexão ao mapa de estatísticas
+     */
+    public void appendStats(Map<String, Object> stats) {
+        long hitCount = hits.get();
+        long lookups = hitCount + misses.get();
+        stats.put("reconnectGraceEntries", entries.size());
+        stats.put("reconnectGraceHits", hitCount);
+        stats.put("reconnectGraceMisses", lookups - hitCount);
+        stats.put("reconnectGraceHitRate", lookups == 0 ? 0.0 : (double) hitCount / lookups);
+        stats.put("reconnectGraceExpired", expired.get());
+        flusher.appendStats(stats, "reconnectGrace");
+    }
+}
@@ -0,0 +1,231 @@
+package com.aliloginmod;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Índice IP → contas registradas a partir dele, usado para limitar registros por IP e para
+ * listar as contas de um IP sem percorrer todas as contas.
+ *
+ * Cada IP guarda suas contas em ordem de registro. O limite total olha o tamanho da lista e o
+ * limite por janela olha só a N-ésima conta mais recente (registrada dentro da janela = limite
+ * atingido), então as duas verificações têm custo constante. A vaga é reservada antes do hash da
+ * senha e liberada se o registro falhar, então pedidos simultâneos não passam do limite.
+ * Contas registradas antes do índice existir não aparecem nele.
+ */
+public class RegistrationIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RegistrationIndex.class);
+
+    private static final int MAGIC = 0x414C4950; // "ALIP"
+    private static final int VERSION = 1;
+
+    public enum Result {
+        ALLOWED,
+        TOO_MANY_ACCOUNTS,
+        TOO_MANY_RECENT
+    }
+
+    /**
+     * Contas de um IP em ordem de registro; imutável, substituída a cada registro
+     */
+    record Accounts(String[] names, long[] registeredAt) {
+        static final Accounts EMPTY = new Accounts(new String[0], new long[0]);
+
+        int size() {
+            return names.length;
+        }
+
+        Accounts with(String name, long at) {
+            String[] newNames = Arrays.copyOf(names, names.length + 1);
+            long[] newTimes = Arrays.copyOf(registeredAt, registeredAt.length + 1);
+            newNames[names.length] = name;
+            newTimes[names.length] = at;
+            return new Accounts(newNames, newTimes);
+        }
+
+        Accounts without(String name) {
+            for (int i = names.length - 1; i >= 0; i--) {
+                if (names[i].equals(name)) {
+                    String[] newNames = new String[names.length - 1];
+                    long[] newTimes = new long[names.length - 1];
+                    System.arraycopy(names, 0, newNames, 0, i);
+                    System.arraycopy(names, i + 1, newNames, i, names.length - i - 1);
+                    System.arraycopy(registeredAt, 0, newTimes, 0, i);
+                    System.arraycopy(registeredAt, i + 1, newTimes, i, names.length - i - 1);
+                    return new Accounts(newNames, newTimes);
+                }
+            }
+            return this;
+        }
+    }
+
+    private final Path file;
+    private final Map<String, Accounts> byIp = new ConcurrentHashMap<>();
+    private final WriteBehindFlusher flusher;
+
+    // Métricas
+    private final AtomicLong allowed = new AtomicLong();
+    private final AtomicLong deniedTotal = new AtomicLong();
+    private final AtomicLong deniedWindow = new AtomicLong();
+
+    public RegistrationIndex(Path file) {
+        this.file = file;
+        this.flusher = new WriteBehindFlusher("aliloginmod-ipindex-flush", this::flushPending);
+    }
+
+    /**
+     * Carrega o índice gravado e inicia a gravação em segundo plano
+     */
+    public void start() {
+        if (AtomicSnapshotWriter.anyGenerationExists(file)) {
+            Map<String, Accounts> loaded = AtomicSnapshotWriter.readNewestValid(file, in -> read(new DataInputStream(in)));
+            if (loaded == null) {
+                LOGGER.warn("Índice de IPs {} ilegível, começando vazio", file);
+            } else {
+                byIp.clear();
+                byIp.putAll(loaded);
+                LOGGER.info("Índice de registros carregado: {} IPs", byIp.size());
+            }
+        }
+        flusher.start(true, TimeUnit.SECONDS.toMillis(5), TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * Grava o que estiver pendente e para a gravação em segundo plano
+     */
+    public void stop() {
+        flusher.shutdown();
+    }
+
+    /**
+     * Reserva a vaga da conta no IP se os limites da configuração permitirem
+     */
+    public Result tryReserve(String ip, String account) {
+        if (ip == null || ip.isEmpty()) {
+            return Result.ALLOWED;
+        }
+        long now = System.currentTimeMillis();
+        int maxTotal = Config.registrationMaxPerIp;
+        int maxRecent = Config.registrationMaxPerWindow;
+        long windowStart = now - TimeUnit.HOURS.toMillis(Config.registrationWindowHours);
+        Result[] result = {Result.ALLOWED};
+
+        byIp.compute(ip, (k, accounts) -> {
+            Accounts current = accounts == null ? Accounts.EMPTY : accounts;
+            int size = current.size();
+            if (maxTotal > 0 && size >= maxTotal) {
+                result[0] = Result.TOO_MANY_ACCOUNTS;
+                return accounts;
+            }
+            if (maxRecent > 0 && size >= maxRecent && current.registeredAt()[size - maxRecent] > windowStart) {
+                result[0] = Result.TOO_MANY_RECENT;
+                return accounts;
+            }
+            return current.with(account, now);
+        });
+
+        switch (result[0]) {
+            case ALLOWED -> {
+                allowed.incrementAndGet();
+                flusher.markDirty();
+            }
+            case TOO_MANY_ACCOUNTS -> deniedTotal.incrementAndGet();
+            case TOO_MANY_RECENT -> deniedWindow.incrementAndGet();
+        }
+        return result[0];
+    }
+
+    /**
+     * Devolve a vaga de um registro que não se concretizou
+     */
+    public void release(String ip, String account) {
+        if (ip == null || ip.isEmpty()) {
+            return;
+        }
+        byIp.computeIfPresent(ip, (k, accounts) -> {
+            Accounts updated = accounts.without(account);
+            return updated.size() == 0 ? null : updated;
+        });
+        flusher.markDirty();
+    }
+
+    /**
+     * Contas registradas a partir do IP, em ordem de registro
+     */
+    public List<String> accounts(String ip) {
+        Accounts accounts = byIp.get(ip);
+        return accounts == null ? List.of() : List.of(accounts.names());
+    }
+
+    private void flushPending() {
+        try {
+            Map<String, Accounts> snapshot = new HashMap<>(byIp);
+            AtomicSnapshotWriter.write(file, out -> {
+                DataOutputStream data = new DataOutputStream(out);
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+                data.writeInt(snapshot.size());
+                for (Map.Entry<String, Accounts> e : snapshot.entrySet()) {
+                    Accounts accounts = e.getValue();
+                    data.writeUTF(e.getKey());
+                    data.writeInt(accounts.size());
+                    for (int i = 0; i < accounts.size(); i++) {
+                        data.writeUTF(accounts.names()[i]);
+                        data.writeLong(accounts.registeredAt()[i]);
+                    }
+                }
+                data.flush();
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, Accounts> read(DataInputStream data) throws IOException {
+        if (data.readInt() != MAGIC) {
+            throw new IOException("não é um índice de IPs");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("versão " + version + " não suportada");
+        }
+        int count = data.readInt();
+        Map<String, Accounts> loaded = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+        for (int i = 0; i < count; i++) {
+            String ip = data.readUTF();
+            int size = data.readInt();
+            String[] names = new String[size];
+            long[] times = new long[size];
+            for (int j = 0; j < size; j++) {
+                names[j] = data.readUTF();
+                times[j] = data.readLong();
+            }
+            loaded.put(ip, new Accounts(names, times));
+        }
+        return loaded;
+    }
+
+    /**
+     * Adiciona as métricas do índice ao mapa de estatísticas
+     */
+    public void appendStats(Map<String, Object> stats) {
+        stats.put("registrationIndexIps", byIp.size());
+        stats.put("registrationAllowed", allowed.get());
+        stats.put("registrationDeniedPerIp", deniedTotal.get());
+        stats.put("registrationDeniedPerWindow", deniedWindow.get());
+        flusher.appendStats(stats, "registrationIndex");
+    }
+}
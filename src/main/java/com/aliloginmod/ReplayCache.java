@@ -0,0 +1,102 @@
+package com.aliloginmod;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Nonces já usados nos handshakes, para que um pacote assinado não seja aceito duas vezes.
+ *
+ * Os nonces ficam em baldes pelo timestamp do pacote. Um pacote só é aceito dentro da janela
+ * de validade, então um balde inteiro é descartado quando sai da janela, sem percorrer os
+ * nonces um a um. A quantidade total é limitada: com o cache cheio novos handshakes são
+ * recusados (o jogador ainda pode usar /logar) em vez de a memória crescer durante uma enxurrada.
+ */
+public class ReplayCache {
+    public enum Outcome {
+        ACCEPTED,
+        REPLAYED,
+        FULL
+    }
+
+    private final long windowMillis;
+    private final long bucketMillis;
+    private final int maxEntries;
+    private final long[] bucketIds;
+    private final Set<String>[] buckets;
+    private int size;
+
+    // Métricas
+    private long expired;
+
+    @SuppressWarnings("unchecked")
+    public ReplayCache(long windowMillis, long bucketMillis, int maxEntries) {
+        this.windowMillis = windowMillis;
+        this.bucketMillis = bucketMillis;
+        this.maxEntries = maxEntries;
+        // Timestamps aceitos vão de agora - janela até agora + janela; um balde a mais evita
+        // que dois baldes vivos caiam na mesma posição
+        int count = (int) (2 * windowMillis / bucketMillis) + 2;
+        this.bucketIds = new long[count];
+        this.buckets = new Set[count];
+        for (int i = 0; i < count; i++) {
+            bucketIds[i] = Long.MIN_VALUE;
+            buckets[i] = new HashSet<>();
+        }
+    }
+
+    /**
+     * Registra o nonce de um pacote com o timestamp dado (já conferido contra a janela)
+     */
+    public synchronized Outcome register(String nonce, long timestamp, long now) {
+        expire(now);
+
+        long id = Math.floorDiv(timestamp, bucketMillis);
+        int slot = (int) Math.floorMod(id, (long) buckets.length);
+        if (bucketIds[slot] != id) {
+            // Posição ocupada por um balde fora da janela
+            drop(slot);
+            bucketIds[slot] = id;
+        }
+
+        Set<String> bucket = buckets[slot];
+        if (bucket.contains(nonce)) {
+            return Outcome.REPLAYED;
+        }
+        if (size >= maxEntries) {
+            return Outcome.FULL;
+        }
+        bucket.add(nonce);
+        size++;
+        return Outcome.ACCEPTED;
+    }
+
+    /**
+     * Descarta os baldes cujos pacotes já não seriam aceitos
+     */
+    private void expire(long now) {
+        long oldest = Math.floorDiv(now - windowMillis, bucketMillis);
+        for (int slot = 0; slot < buckets.length; slot++) {
+            if (bucketIds[slot] < oldest && !buckets[slot].isEmpty()) {
+                drop(slot);
+            }
+        }
+    }
+
+    private void drop(int slot) {
+        int count = buckets[slot].size();
+        // clear() mantém a tabela alocada: a memória fica estável entre as janelas
+        buckets[slot].clear();
+        size -= count;
+        expired += count;
+    }
+
+    /**
+     * Adiciona as métricas do cache ao mapa de estatísticas
+     */
+    public synchronized void appendStats(Map<String, Object> stats, String prefix) {
+        stats.put(prefix + "Entries", size);
+        stats.put(prefix + "MaxEntries", maxEntries);
+        stats.put(prefix + "Expired", expired);
+    }
+}
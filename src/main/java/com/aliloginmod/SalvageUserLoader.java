@@ -0,0 +1,214 @@
+package com.aliloginmod;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Leitura tolerante de um arquivo de usuários corrompido. No JSON cada conta é localizada pelo
+ * seu início e lida isoladamente, então um registro danificado não impede a leitura dos demais.
+ * As contas válidas vão para o mapa de destino; os registros rejeitados são gravados em um
+ * arquivo ao lado, uma linha JSON por registro com a posição em bytes e o motivo.
+ */
+public class SalvageUserLoader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SalvageUserLoader.class);
+
+    // Início de uma conta: "chave": { seguido de um dos campos de UserData
+    private static final Pattern RECORD_START = Pattern.compile(
+            "\"((?:[^\"\\\\]|\\\\.)*)\"\\s*:\\s*(\\{)\\s*\"(?:username|passwordHash|registrationDate|lastLogin|lastPosition)\"");
+
+    // Limite do conteúdo bruto copiado para o arquivo de rejeitados (a cópia .corrupt tem o arquivo inteiro)
+    private static final int MAX_RAW_BYTES = 64 * 1024;
+    // Quantidade de registros rejeitados detalhados no log
+    private static final int LOGGED_REJECTS = 20;
+
+    /**
+     * Resultado da recuperação: contas carregadas, registros rejeitados e onde foram guardados
+     */
+    public record Result(long recovered, long rejected, List<Long> rejectedOffsets, Path rejectFile) {
+    }
+
+    private record Rejected(long offset, String reason, String raw, boolean binary) {
+    }
+
+    /**
+     * Carrega todas as contas válidas do arquivo para o mapa de destino
+     */
+    public static Result salvage(Path file, Config.SnapshotFormat format, Map<String, UserDataManager.UserData> target,
+                                 Gson gson) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        List<Rejected> rejected = new ArrayList<>();
+        long recovered = format == Config.SnapshotFormat.BINARY
+                ? salvageBinary(bytes, target, rejected)
+                : salvageJson(bytes, target, gson, rejected);
+
+        Path rejectFile = rejected.isEmpty() ? null : writeRejects(file, rejected);
+        List<Long> offsets = new ArrayList<>(rejected.size());
+        for (Rejected entry : rejected) {
+            offsets.add(entry.offset());
+        }
+
+        LOGGER.warn("Recuperação de {}: {} contas carregadas, {} registros rejeitados", file, recovered, rejected.size());
+        for (int i = 0; i < Math.min(rejected.size(), LOGGED_REJECTS); i++) {
+            LOGGER.warn("  byte {}: {}", rejected.get(i).offset(), rejected.get(i).reason());
+        }
+        if (rejected.size() > LOGGED_REJECTS) {
+            LOGGER.warn("  ... e mais {} registros", rejected.size() - LOGGED_REJECTS);
+        }
+        if (rejectFile != null) {
+            LOGGER.warn("Registros rejeitados preservados em {}", rejectFile);
+        }
+        return new Result(recovered, rejected.size(), offsets, rejectFile);
+    }
+
+    private static long salvageJson(byte[] bytes, Map<String, UserDataManager.UserData> target, Gson gson,
+                                    List<Rejected> rejected) {
+        TypeAdapter<UserDataManager.UserData> adapter = gson.getAdapter(UserDataManager.UserData.class);
+        // Um caractere por byte: os índices no texto são as posições no arquivo
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        Matcher matcher = RECORD_START.matcher(text);
+        long recovered = 0;
+        int previousEnd = 0;
+
+        boolean found = matcher.find();
+        while (found) {
+            int start = matcher.start();
+            int objectStart = matcher.start(2);
+            found = matcher.find();
+            int limit = found ? matcher.start() : text.length();
+
+            rejectGap(bytes, text, previousEnd, start, rejected);
+            int objectEnd = matchingBrace(text, objectStart, limit);
+            if (objectEnd < 0) {
+                rejected.add(rejectJson(bytes, start, limit, "registro incompleto"));
+                previousEnd = limit;
+                continue;
+            }
+            previousEnd = objectEnd + 1;
+
+            try {
+                JsonReader reader = new JsonReader(new StringReader(
+                        "{" + new String(bytes, start, objectEnd + 1 - start, StandardCharsets.UTF_8) + "}"));
+                reader.beginObject();
+                String key = reader.nextName();
+                UserDataManager.UserData data = adapter.read(reader);
+                reader.endObject();
+                if (reader.peek() != JsonToken.END_DOCUMENT) {
+                    throw new JsonParseException("conteúdo inesperado após o registro");
+                }
+                String problem = StreamingUserLoader.invalidReason(data);
+                if (problem != null) {
+                    rejected.add(rejectJson(bytes, start, previousEnd, problem));
+                    continue;
+                }
+                target.put(key, data);
+                recovered++;
+            } catch (IOException | RuntimeException e) {
+                rejected.add(rejectJson(bytes, start, previousEnd, describe(e)));
+            }
+        }
+
+        rejectGap(bytes, text, previousEnd, text.length(), rejected);
+        return recovered;
+    }
+
+    private static long salvageBinary(byte[] bytes, Map<String, UserDataManager.UserData> target, List<Rejected> rejected) {
+        Map<String, UserDataManager.UserData> decoded = new HashMap<>();
+        BinaryUserSnapshot.Damage damage = BinaryUserSnapshot.salvage(new ByteArrayInputStream(bytes), decoded);
+        if (damage != null) {
+            // Sem marcas de sincronização no formato binário: o restante do arquivo é rejeitado em bloco
+            int from = (int) Math.min(damage.offset(), bytes.length);
+            int to = Math.min(bytes.length, from + MAX_RAW_BYTES);
+            String raw = Base64.getEncoder().encodeToString(Arrays.copyOfRange(bytes, from, to));
+            rejected.add(new Rejected(damage.offset(), damage.reason() + " (" + (bytes.length - from) + " bytes descartados)", raw, true));
+        }
+        target.putAll(decoded);
+        return decoded.size();
+    }
+
+    /**
+     * Conteúdo entre dois registros deveria ser apenas separadores; qualquer outra coisa é rejeitada
+     */
+    private static void rejectGap(byte[] bytes, String text, int from, int to, List<Rejected> rejected) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c) && c != ',' && c != '{' && c != '}') {
+                rejected.add(rejectJson(bytes, i, to, "conteúdo não reconhecido entre registros"));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Posição do '}' que fecha o objeto iniciado em objectStart, ignorando chaves dentro de textos.
+     * Retorna -1 se o objeto não fechar antes do limite.
+     */
+    private static int matchingBrace(String text, int objectStart, int limit) {
+        int depth = 0;
+        boolean inString = false;
+        for (int i = objectStart; i < limit; i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (--depth == 0) {
+                    return c == '}' ? i : -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static Rejected rejectJson(byte[] bytes, int from, int to, String reason) {
+        int length = Math.min(to - from, MAX_RAW_BYTES);
+        return new Rejected(from, reason, new String(bytes, from, length, StandardCharsets.UTF_8), false);
+    }
+
+    private static String describe(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+
+    private static Path writeRejects(Path file, List<Rejected> rejected) {
+        Path rejectFile = AtomicSnapshotWriter.sibling(file, ".rejected-" + System.currentTimeMillis());
+        try (Writer writer = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8)) {
+            for (Rejected entry : rejected) {
+                JsonWriter json = new JsonWriter(writer);
+                json.beginObject();
+                json.name("offset").value(entry.offset());
+                json.name("reason").value(entry.reason());
+                json.name(entry.binary() ? "rawBase64" : "raw").value(entry.raw());
+                json.endObject();
+                json.flush();
+                writer.write('\n');
+            }
+            return rejectFile;
+        } catch (IOException e) {
+            LOGGER.error("Erro ao gravar registros rejeitados em {}: ", rejectFile, e);
+            return null;
+        }
+    }
+}
@@ -3,13 +3,16 @@ package com.aliloginmod;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.server.ServerStartingEvent;
 import net.minecraftforge.event.server.ServerStoppingEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Executors;
@@ -24,17 +27,21 @@ public class SessionManager {
     // Tempo limite para login em segundos (5 minutos)
     private static final int LOGIN_TIMEOUT_SECONDS = 300;
     
-    // Executor para tarefas agendadas
-    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    // Executor para tarefas agendadas; recriado a cada início, pois o desligamento o encerra
+    // (servidor integrado pode iniciar várias vezes na mesma JVM)
+    private static volatile ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
     
     // Mapa de jogadores e suas tarefas de timeout
     private static final Map<UUID, ScheduledFuture<?>> loginTimeouts = new HashMap<>();
     
-    // Mapa de tentativas de login por jogador
-    private static final Map<UUID, Integer> loginAttempts = new HashMap<>();
+    // Senhas erradas e bloqueios por conta e por IP (persistidos entre reconexões e reinícios)
+    private static final LockoutStore LOCKOUTS = new LockoutStore(Paths.get("aliloginmod_lockouts.dat"));
     
-    // Máximo de tentativas de login
-    private static final int MAX_LOGIN_ATTEMPTS = 5;
+    // Limites de tentativas de autenticação (global, por IP e por conta), verificados antes do hash
+    private static final LoginRateLimiter RATE_LIMITER = new LoginRateLimiter();
+    
+    // Jogadores que podem reconectar já logados (mesmo UUID e IP, dentro do período configurado)
+    private static final ReconnectGraceStore RECONNECT_GRACE = new ReconnectGraceStore(Paths.get("aliloginmod_reconnect.dat"));
     
     /**
      * Evento quando jogador entra no servidor
@@ -48,8 +55,29 @@ public class SessionManager {
         
         LOGGER.info("Jogador {} ({}) entrou no servidor", username, playerId);
         
-        // Remove tentativas anteriores se existirem
-        loginAttempts.remove(playerId);
+        // As contas precisam estar carregadas antes de verificar o jogador
+        UserDataManager.awaitUserData();
+        
+        // IP bloqueado por senhas erradas continua bloqueado após reconectar. O bloqueio da conta
+        // só impede /logar: na entrada ele derrubaria o dono de qualquer IP (nome em modo offline)
+        long lockedMillis = LOCKOUTS.remainingIpLockMillis(player.getIpAddress());
+        if (lockedMillis > 0) {
+            LOGGER.info("Jogador {} bloqueado por tentativas de login por mais {} s", username, lockedMillis / 1000);
+            player.connection.disconnect(lockoutMessage(lockedMillis));
+            return;
+        }
+        
+        // Mantém a conta em cache enquanto o jogador estiver online
+        UserDataManager.pinUser(username);
+        
+        // Reconexão dentro do período de tolerância: volta logado sem verificar a senha
+        if (!UserDataManager.isPlayerLoggedIn(player) && UserDataManager.isUserRegistered(username)
+                && RECONNECT_GRACE.claim(playerId, username, player.getIpAddress())) {
+            UserDataManager.loginPlayer(player);
+            MessageManager.stopLoginReminders(playerId);
+            player.sendSystemMessage(Component.literal("§aSessão restaurada! Você reconectou a tempo e não precisa fazer login novamente."));
+            LOGGER.info("Jogador {} reconectou dentro do período de tolerância", username);
+        }
         
         // Se o jogador não estiver logado, inicia o timeout
         if (!UserDataManager.isPlayerLoggedIn(player)) {
@@ -71,25 +99,45 @@ public class SessionManager {
         
         LOGGER.info("Jogador {} ({}) saiu do servidor", username, playerId);
         
-        // Salva a posição do jogador se ele estiver logado
+        // Salva a posição do jogador se ele estiver logado e abre o período de reconexão a partir de agora
         if (UserDataManager.isPlayerLoggedIn(player)) {
             UserDataManager.savePlayerPosition(player);
+            RECONNECT_GRACE.extend(List.of(playerId));
         }
         
         // Remove o jogador da lista de logados
         UserDataManager.logoutPlayer(player);
+        UserDataManager.unpinUser(username);
         
         // Cancela timeout se existir
         cancelLoginTimeout(playerId);
         
-        // Remove tentativas de login
-        loginAttempts.remove(playerId);
-        
         // Para lembretes de mensagens
         MessageManager.stopLoginReminders(playerId);
-        
-        // Salva os dados
-        UserDataManager.saveUserData();
+    }
+    
+    /**
+     * Evento quando servidor está iniciando: carrega bloqueios, reconexões e tokens e agenda a expiração
+     */
+    @SubscribeEvent
+    public static void onServerStarting(ServerStartingEvent event) {
+        LOCKOUTS.start();
+        RECONNECT_GRACE.start();
+        SessionTokens.start(Paths.get("aliloginmod_token.key"), Paths.get("aliloginmod_token_revocations.dat"));
+        if (scheduler.isShutdown()) {
+            scheduler = Executors.newScheduledThreadPool(2);
+        }
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                LOCKOUTS.expire();
+                // Renovar quem está online mantém o período válido mesmo se o servidor cair
+                RECONNECT_GRACE.extend(UserDataManager.getLoggedInPlayerIds());
+                RECONNECT_GRACE.expire();
+                SessionTokens.expire();
+            } catch (Exception e) {
+                LOGGER.error("Erro ao expirar bloqueios de login: ", e);
+            }
+        }, 1, 1, TimeUnit.MINUTES);
     }
     
     /**
@@ -103,11 +151,23 @@ public class SessionManager {
         loginTimeouts.values().forEach(future -> future.cancel(true));
         loginTimeouts.clear();
         
-        // Limpa tentativas de login
-        loginAttempts.clear();
+        // Jogadores ainda online reconectam logados após o reinício
+        RECONNECT_GRACE.extend(UserDataManager.getLoggedInPlayerIds());
+        
+        // O Forge só dispara a saída dos jogadores depois deste evento, com o armazenamento já
+        // parado: as posições dos jogadores online são salvas agora e a saída não salva de novo
+        for (ServerPlayer player : event.getServer().getPlayerList().getPlayers()) {
+            if (UserDataManager.isPlayerLoggedIn(player)) {
+                UserDataManager.savePlayerPosition(player);
+                UserDataManager.logoutPlayer(player);
+            }
+        }
         
-        // Salva dados de usuários
-        UserDataManager.saveUserData();
+        // Grava alterações pendentes e para a gravação em segundo plano
+        UserDataManager.shutdown();
+        LOCKOUTS.stop();
+        RECONNECT_GRACE.stop();
+        SessionTokens.stop();
         
         // Para o MessageManager
         MessageManager.shutdown();
@@ -177,54 +237,73 @@ public class SessionManager {
     }
     
     /**
-     * Registra uma tentativa de login falhada
+     * Registra uma tentativa de login falhada para a conta e o IP do jogador
      */
-    public static void recordFailedLoginAttempt(ServerPlayer player) {
-        UUID playerId = player.getUUID();
-        int attempts = loginAttempts.getOrDefault(playerId, 0) + 1;
-        loginAttempts.put(playerId, attempts);
+    public static LockoutStore.Failure recordFailedLoginAttempt(ServerPlayer player) {
+        String username = player.getName().getString();
+        LockoutStore.Failure failure = LOCKOUTS.recordFailure(username, player.getIpAddress());
         
         LOGGER.info("Tentativa de login falhada para {} (tentativa {}/{})", 
-                   player.getName().getString(), attempts, MAX_LOGIN_ATTEMPTS);
-        
-        if (attempts >= MAX_LOGIN_ATTEMPTS) {
-            LOGGER.warn("Jogador {} excedeu o limite de tentativas de login", player.getName().getString());
-            
-            player.connection.disconnect(Component.literal(
-                "§cMuitas tentativas de login falhadas!\n" +
-                "§7Você excedeu o limite de " + MAX_LOGIN_ATTEMPTS + " tentativas.\n" +
-                "§7Aguarde alguns minutos antes de tentar novamente."
-            ));
+                   username, failure.accountFailures(), Config.maxLoginAttempts);
+        
+        if (failure.lockedMillis() > 0) {
+            LOGGER.warn("Jogador {} excedeu o limite de tentativas de login, bloqueado por {} s", username, failure.lockedMillis() / 1000);
+            player.connection.disconnect(lockoutMessage(failure.lockedMillis()));
         }
+        return failure;
+    }
+    
+    private static Component lockoutMessage(long lockedMillis) {
+        long minutes = Math.max(1, (lockedMillis + 59_999) / 60_000);
+        return Component.literal(
+            "§cMuitas tentativas de login falhadas!\n" +
+            "§7Esta conta ou conexão está bloqueada.\n" +
+            "§7Aguarde " + minutes + " minuto(s) antes de tentar novamente."
+        );
     }
     
     /**
-     * Limpa tentativas de login para um jogador (após login bem-sucedido)
+     * Consome uma tentativa de autenticação nos limites global, do IP e da conta do jogador
      */
-    public static void clearLoginAttempts(UUID playerId) {
-        loginAttempts.remove(playerId);
+    public static LoginRateLimiter.Decision tryAuthAttempt(ServerPlayer player) {
+        return RATE_LIMITER.tryAcquire(player.getIpAddress(), player.getName().getString());
     }
     
     /**
-     * Verifica se um jogador pode tentar fazer login
+     * Abre o período de reconexão do jogador (chamado a cada login)
      */
-    public static boolean canAttemptLogin(UUID playerId) {
-        return loginAttempts.getOrDefault(playerId, 0) < MAX_LOGIN_ATTEMPTS;
+    public static void rememberLogin(ServerPlayer player) {
+        RECONNECT_GRACE.remember(player.getUUID(), player.getName().getString(), player.getIpAddress());
     }
     
-    // Método removido - funcionalidade movida para MessageManager
+    /**
+     * Limpa as senhas erradas da conta do jogador (após login bem-sucedido)
+     */
+    public static void clearLoginAttempts(ServerPlayer player) {
+        LOCKOUTS.recordSuccess(player.getName().getString());
+    }
     
     /**
-     * Obtém o número de tentativas de login para um jogador
+     * Verifica se o jogador pode tentar fazer login (conta e IP sem bloqueio)
      */
-    public static int getLoginAttempts(UUID playerId) {
-        return loginAttempts.getOrDefault(playerId, 0);
+    public static boolean canAttemptLogin(ServerPlayer player) {
+        return LOCKOUTS.remainingLockMillis(player.getName().getString(), player.getIpAddress()) == 0;
     }
     
     /**
      * Obtém o número máximo de tentativas permitidas
      */
     public static int getMaxLoginAttempts() {
-        return MAX_LOGIN_ATTEMPTS;
+        return Config.maxLoginAttempts;
+    }
+    
+    /**
+     * Adiciona as métricas de sessão ao mapa de estatísticas
+     */
+    public static void appendStats(Map<String, Object> stats) {
+        RATE_LIMITER.appendStats(stats);
+        LOCKOUTS.appendStats(stats);
+        RECONNECT_GRACE.appendStats(stats);
+        SessionTokens.appendStats(stats);
     }
 }
\ No newline at end of file
@@ -0,0 +1,272 @@
+package com.aliloginmod;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tokens de sessão emitidos pelo servidor após um login com senha, guardados pelo cliente e
+ * apresentados na próxima entrada para logar sem senha.
+ *
+ * O token é {@code emitidoEm.expiraEm.hmac}, com o HMAC-SHA256 calculado com uma chave aleatória
+ * do próprio servidor sobre UUID, nome, emissão e expiração. Verificar é um único HMAC, sem
+ * consultar as contas e sem hash de senha. /novasenha revoga os tokens da conta guardando o
+ * instante da troca: tokens emitidos até ele são recusados. Essa lista só tem as contas que
+ * trocaram de senha dentro da validade dos tokens e fica em memória, gravada em disco.
+ */
+public final class SessionTokens {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionTokens.class);
+
+    private static final int KEY_BYTES = 32;
+    private static final int MAC_HEX_LENGTH = 64;
+    private static final int MAGIC = 0x414C5452; // "ALTR"
+    private static final int VERSION = 1;
+
+    public enum Result {
+        ACCEPTED,
+        DISABLED,
+        MALFORMED,
+        EXPIRED,
+        BAD_SIGNATURE,
+        REVOKED
+    }
+
+    private static volatile byte[] key;
+    private static Path revocationFile;
+    // Conta (minúsculas) -> instante da última troca de senha
+    private static final Map<String, Long> revokedBefore = new ConcurrentHashMap<>();
+    // Revogações são raras: cada uma é gravada logo, fora da thread do servidor
+    private static final WriteBehindFlusher FLUSHER = new WriteBehindFlusher("aliloginmod-token-flush", SessionTokens::flushPending);
+
+    // Métricas
+    private static final AtomicLong issued = new AtomicLong();
+    private static final AtomicLong[] results = new AtomicLong[Result.values().length];
+    private static final AtomicLong verifyNanos = new AtomicLong();
+
+    static {
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new AtomicLong();
+        }
+    }
+
+    private SessionTokens() {
+    }
+
+    /**
+     * Carrega (ou cria na primeira vez) a chave do servidor e as revogações gravadas
+     */
+    public static synchronized void start(Path keyFile, Path revocations) {
+        try {
+            key = loadOrCreateKey(keyFile);
+        } catch (IOException e) {
+            key = null;
+            LOGGER.error("Não foi possível ler ou criar a chave de tokens {}. Tokens de sessão desativados.", keyFile, e);
+        }
+
+        revocationFile = revocations;
+        if (AtomicSnapshotWriter.anyGenerationExists(revocations)) {
+            Map<String, Long> loaded = AtomicSnapshotWriter.readNewestValid(revocations, in -> read(new DataInputStream(in)));
+            if (loaded == null) {
+                LOGGER.warn("Arquivo de revogações {} ilegível, começando vazio", revocations);
+            } else {
+                revokedBefore.clear();
+                revokedBefore.putAll(loaded);
+                expire();
+            }
+        }
+        FLUSHER.start(false, 0, 0);
+    }
+
+    /**
+     * Grava o que estiver pendente e para a gravação em segundo plano
+     */
+    public static void stop() {
+        FLUSHER.shutdown();
+    }
+
+    private static byte[] loadOrCreateKey(Path keyFile) throws IOException {
+        if (Files.exists(keyFile)) {
+            byte[] loaded = CryptoUtils.fromHex(Files.readString(keyFile, StandardCharsets.US_ASCII).trim());
+            if (loaded != null && loaded.length == KEY_BYTES) {
+                return loaded;
+            }
+            LOGGER.warn("Chave de tokens {} inválida, gerando outra (tokens emitidos antes deixam de valer)", keyFile);
+        }
+
+        byte[] created = new byte[KEY_BYTES];
+        new SecureRandom().nextBytes(created);
+        Files.writeString(keyFile, CryptoUtils.toHex(created), StandardCharsets.US_ASCII);
+        try {
+            Files.setPosixFilePermissions(keyFile, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Sistema de arquivos sem permissões POSIX (Windows)
+        }
+        LOGGER.info("Chave de tokens de sessão criada em {}", keyFile);
+        return created;
+    }
+
+    private static boolean enabled() {
+        return Config.sessionTokenDays > 0 && key != null;
+    }
+
+    /**
+     * Emite um token para o jogador; null se os tokens estão desativados
+     */
+    public static String issue(UUID playerId, String username) {
+        if (!enabled()) {
+            return null;
+        }
+        String account = username.toLowerCase(Locale.ROOT);
+        // Sempre depois da última revogação, mesmo no mesmo milissegundo
+        long issuedAt = Math.max(System.currentTimeMillis(), revokedBefore.getOrDefault(account, 0L) + 1);
+        long expiresAt = issuedAt + TimeUnit.DAYS.toMillis(Config.sessionTokenDays);
+        issued.incrementAndGet();
+        return issuedAt + "." + expiresAt + "." + CryptoUtils.toHex(mac(playerId, account, issuedAt, expiresAt));
+    }
+
+    /**
+     * Verifica o token apresentado pelo jogador
+     */
+    public static Result verify(UUID playerId, String username, String token) {
+        long start = System.nanoTime();
+        Result result = check(playerId, username, token);
+        verifyNanos.addAndGet(System.nanoTime() - start);
+        results[result.ordinal()].incrementAndGet();
+        return result;
+    }
+
+    private static Result check(UUID playerId, String username, String token) {
+        if (!enabled()) {
+            return Result.DISABLED;
+        }
+        int first = token.indexOf('.');
+        int second = first < 0 ? -1 : token.indexOf('.', first + 1);
+        if (second < 0 || token.length() - second - 1 != MAC_HEX_LENGTH) {
+            return Result.MALFORMED;
+        }
+        long issuedAt;
+        long expiresAt;
+        try {
+            issuedAt = Long.parseLong(token, 0, first, 10);
+            expiresAt = Long.parseLong(token, first + 1, second, 10);
+        } catch (NumberFormatException e) {
+            return Result.MALFORMED;
+        }
+        byte[] received = CryptoUtils.fromHex(token.substring(second + 1));
+        if (received == null) {
+            return Result.MALFORMED;
+        }
+
+        // Também respeita uma validade reduzida na configuração depois da emissão
+        if (expiresAt <= System.currentTimeMillis() || expiresAt - issuedAt > TimeUnit.DAYS.toMillis(Config.sessionTokenDays)) {
+            return Result.EXPIRED;
+        }
+        String account = username.toLowerCase(Locale.ROOT);
+        if (!CryptoUtils.constantTimeEquals(mac(playerId, account, issuedAt, expiresAt), received)) {
+            return Result.BAD_SIGNATURE;
+        }
+        Long revoked = revokedBefore.get(account);
+        return revoked != null && issuedAt <= revoked ? Result.REVOKED : Result.ACCEPTED;
+    }
+
+    private static byte[] mac(UUID playerId, String account, long issuedAt, long expiresAt) {
+        String data = playerId + ":" + account + ":" + issuedAt + ":" + expiresAt;
+        return CryptoUtils.hmacSha256(key, data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Invalida todos os tokens já emitidos para a conta (troca de senha)
+     */
+    public static void revoke(String username) {
+        revokedBefore.put(username.toLowerCase(Locale.ROOT), System.currentTimeMillis());
+        FLUSHER.markDirty();
+    }
+
+    /**
+     * Esquece revogações mais antigas que a validade máxima de um token
+     */
+    public static void expire() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(Math.max(1, Config.sessionTokenDays));
+        if (revokedBefore.values().removeIf(revoked -> revoked < cutoff)) {
+            FLUSHER.markDirty();
+        }
+    }
+
+    private static void flushPending() {
+        Path target = revocationFile;
+        if (target == null) {
+            return;
+        }
+        try {
+            Map<String, Long> snapshot = new HashMap<>(revokedBefore);
+            AtomicSnapshotWriter.write(target, out -> {
+                DataOutputStream data = new DataOutputStream(out);
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+                data.writeInt(snapshot.size());
+                for (Map.Entry<String, Long> e : snapshot.entrySet()) {
+                    data.writeUTF(e.getKey());
+                    data.writeLong(e.getValue());
+                }
+                data.flush();
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, Long> read(DataInputStream data) throws IOException {
+        if (data.readInt() != MAGIC) {
+            throw new IOException("não é um arquivo de revogações");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("versão " + version + " não suportada");
+        }
+        int count = data.readInt();
+        Map<String, Long> loaded = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+        for (int i = 0; i < count; i++) {
+            loaded.put(data.readUTF(), data.readLong());
+        }
+        return loaded;
+    }
+
+    /**
+     * Adiciona as métricas dos tokens ao mapa de estatísticas
+     */
+    public static void appendStats(Map<String, Object> stats) {
+        long total = 0;
+        stats.put("sessionTokensIssued", issued.get());
+        for (Result result : Result.values()) {
+            long count = results[result.ordinal()].get();
+            total += count;
+            stats.put("sessionToken" + camelCase(result), count);
+        }
+        stats.put("sessionTokenAvgVerifyMicros", total == 0 ? 0.0 : verifyNanos.get() / 1_000.0 / total);
+        stats.put("sessionTokenRevokedAccounts", revokedBefore.size());
+    }
+
+    private static String camelCase(Result result) {
+        StringBuilder name = new StringBuilder();
+        for (String part : result.name().split("_")) {
+            name.append(part.charAt(0)).append(part.substring(1).toLowerCase(Locale.ROOT));
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,300 @@
+package com.aliloginmod;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Divide os dados de usuários em N arquivos (shards) pelo hash do nome em minúsculas.
+ * Uma alteração reescreve apenas o shard que contém a conta alterada.
+ */
+public class ShardedUserFiles {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedUserFiles.class);
+
+    @FunctionalInterface
+    public interface ShardWriter {
+        void write(Map<String, UserDataManager.UserData> users, OutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface ShardReader {
+        Long read(InputStream in, Map<String, UserDataManager.UserData> users) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface ShardSalvager {
+        boolean salvage(Path file, Map<String, UserDataManager.UserData> users);
+    }
+
+    private final Path directory;
+    private final int shardCount;
+    // Extensão dos arquivos conforme o formato do snapshot (".json" ou ".dat")
+    private final String extension;
+    private final AtomicIntegerArray dirty;
+
+    public ShardedUserFiles(Path directory, int shardCount, String extension) {
+        this.directory = directory;
+        this.shardCount = shardCount;
+        this.extension = extension;
+        this.dirty = new AtomicIntegerArray(shardCount);
+    }
+
+    /**
+     * Detecta shards já existentes no diretório com a extensão dada. Retorna null se não houver nenhum.
+     */
+    public static ShardedUserFiles detect(Path directory, String extension) {
+        int highest = -1;
+        for (int index : existingIndexes(directory, extension)) {
+            highest = Math.max(highest, index);
+        }
+        return highest < 0 ? null : new ShardedUserFiles(directory, highest + 1, extension);
+    }
+
+    public static int shardOf(String key, int shardCount) {
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    public Path shardPath(int shard) {
+        return directory.resolve(String.format(Locale.ROOT, "shard-%03d%s", shard, extension));
+    }
+
+    /**
+     * Carrega todos os shards em paralelo, cada um em seu próprio mapa, e só junta as contas no
+     * mapa de destino se todos forem lidos. Um shard sem geração válida é preservado e passado
+     * para a leitura tolerante; se nem ela funcionar o carregamento falha sem tocar no destino.
+     */
+    public void loadAll(ShardReader reader, ShardSalvager salvager, Map<String, UserDataManager.UserData> target) throws IOException {
+        int threads = Math.max(1, Math.min(shardCount, Runtime.getRuntime().availableProcessors()));
+        ExecutorService loader = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "aliloginmod-shard-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<Map<String, UserDataManager.UserData>>> futures = new ArrayList<>();
+            for (int shard = 0; shard < shardCount; shard++) {
+                Path path = shardPath(shard);
+                futures.add(loader.submit(() -> loadShard(path, reader, salvager)));
+            }
+            List<Map<String, UserDataManager.UserData>> loaded = new ArrayList<>(shardCount);
+            for (Future<Map<String, UserDataManager.UserData>> future : futures) {
+                loaded.add(future.get());
+            }
+            for (Map<String, UserDataManager.UserData> users : loaded) {
+                target.putAll(users);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Carregamento dos shards interrompido");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException io ? io : new IOException("Erro ao carregar shards de usuários", cause);
+        } finally {
+            loader.shutdownNow();
+        }
+    }
+
+    private static Map<String, UserDataManager.UserData> loadShard(Path path, ShardReader reader, ShardSalvager salvager) throws IOException {
+        Map<String, UserDataManager.UserData> users = new HashMap<>();
+        if (!AtomicSnapshotWriter.anyGenerationExists(path)) {
+            return users;
+        }
+        Long loaded = AtomicSnapshotWriter.readNewestValid(path, in -> {
+            // Uma geração inválida pode ter deixado contas parciais no mapa do shard
+            users.clear();
+            return reader.read(in, users);
+        });
+        if (loaded == null) {
+            users.clear();
+            Path copy = AtomicSnapshotWriter.quarantine(path);
+            LOGGER.error("Shard {} sem geração válida! Cópia preservada em {}", path, copy);
+            if (!salvager.salvage(AtomicSnapshotWriter.newestGeneration(path), users)) {
+                throw new IOException("Shard " + path + " ilegível, nem a leitura tolerante conseguiu abri-lo");
+            }
+        }
+        return users;
+    }
+
+    public void markDirty(String key) {
+        dirty.set(shardOf(key, shardCount), 1);
+    }
+
+    /**
+     * Reescreve apenas os shards alterados desde a última gravação. As marcações são limpas antes
+     * de obter a cópia das contas, então uma alteração feita durante a gravação nunca é perdida.
+     */
+    public void flushDirty(Supplier<Map<String, UserDataManager.UserData>> snapshot, ShardWriter writer) throws IOException {
+        boolean[] selected = new boolean[shardCount];
+        boolean any = false;
+        for (int shard = 0; shard < shardCount; shard++) {
+            if (dirty.getAndSet(shard, 0) == 1) {
+                selected[shard] = true;
+                any = true;
+            }
+        }
+        if (any) {
+            write(snapshot, writer, selected);
+        }
+    }
+
+    /**
+     * Reescreve todos os shards
+     */
+    public void writeAll(Supplier<Map<String, UserDataManager.UserData>> snapshot, ShardWriter writer) throws IOException {
+        boolean[] selected = new boolean[shardCount];
+        Arrays.fill(selected, true);
+        for (int shard = 0; shard < shardCount; shard++) {
+            dirty.set(shard, 0);
+        }
+        write(snapshot, writer, selected);
+    }
+
+    /**
+     * Remove shards com índice fora da contagem atual (após reduzir o número de shards)
+     */
+    public void deleteStaleShards() {
+        for (int index : existingIndexes(directory, extension)) {
+            if (index >= shardCount) {
+                deleteGenerations(shardPath(index));
+            }
+        }
+    }
+
+    /**
+     * Remove todos os shards (após migrar de volta para arquivo único)
+     */
+    public void deleteAll() {
+        for (int index : existingIndexes(directory, extension)) {
+            deleteGenerations(shardPath(index));
+        }
+    }
+
+    /**
+     * Adiciona a contagem e os tamanhos dos shards ao mapa de estatísticas
+     */
+    public void appendStats(Map<String, Object> stats) {
+        List<Long> sizes = new ArrayList<>(shardCount);
+        long total = 0;
+        for (int shard = 0; shard < shardCount; shard++) {
+            long size = 0;
+            try {
+                Path path = shardPath(shard);
+                if (Files.exists(path)) {
+                    size = Files.size(path);
+                }
+            } catch (IOException ignored) {
+            }
+            sizes.add(size);
+            total += size;
+        }
+        stats.put("shardCount", shardCount);
+        stats.put("shardSizes", sizes);
+        stats.put("shardTotalBytes", total);
+    }
+
+    /**
+     * Grava os shards selecionados. Um shard que falha não impede os seguintes; todo shard
+     * selecionado que não foi gravado volta a ficar marcado e o primeiro erro é propagado.
+     */
+    private void write(Supplier<Map<String, UserDataManager.UserData>> snapshot, ShardWriter writer, boolean[] selected) throws IOException {
+        boolean[] written = new boolean[shardCount];
+        try {
+            writeSelected(snapshot.get(), writer, selected, written);
+        } finally {
+            for (int shard = 0; shard < shardCount; shard++) {
+                if (selected[shard] && !written[shard]) {
+                    dirty.set(shard, 1);
+                }
+            }
+        }
+    }
+
+    private void writeSelected(Map<String, UserDataManager.UserData> users, ShardWriter writer,
+                               boolean[] selected, boolean[] written) throws IOException {
+        // Agrupa as contas dos shards selecionados em uma única passada
+        List<Map<String, UserDataManager.UserData>> grouped = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            grouped.add(selected[shard] ? new HashMap<>() : null);
+        }
+        for (Map.Entry<String, UserDataManager.UserData> entry : users.entrySet()) {
+            Map<String, UserDataManager.UserData> shardUsers = grouped.get(shardOf(entry.getKey(), shardCount));
+            if (shardUsers != null) {
+                shardUsers.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        Files.createDirectories(directory);
+        IOException failure = null;
+        for (int shard = 0; shard < shardCount; shard++) {
+            Map<String, UserDataManager.UserData> shardUsers = grouped.get(shard);
+            if (shardUsers == null) {
+                continue;
+            }
+            try {
+                AtomicSnapshotWriter.write(shardPath(shard), out -> writer.write(shardUsers, out));
+                written[shard] = true;
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void deleteGenerations(Path path) {
+        try {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(AtomicSnapshotWriter.sibling(path, AtomicSnapshotWriter.TMP_SUFFIX));
+            Files.deleteIfExists(AtomicSnapshotWriter.sibling(path, AtomicSnapshotWriter.BACKUP_SUFFIX));
+        } catch (IOException e) {
+            LOGGER.warn("Erro ao remover shard {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static List<Integer> existingIndexes(Path directory, String extension) {
+        List<Integer> indexes = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return indexes;
+        }
+        Pattern shardName = Pattern.compile("shard-(\\d+)" + Pattern.quote(extension));
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "shard-*" + extension)) {
+            for (Path path : stream) {
+                Matcher matcher = shardName.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    indexes.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Erro ao listar shards em {}: {}", directory, e.getMessage());
+        }
+        return indexes;
+    }
+}
@@ -0,0 +1,530 @@
+package com.aliloginmod;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Armazena as contas em um banco H2 embarcado (arquivo local). As consultas usam a chave
+ * primária pelo nome em minúsculas; atualizações de login, senha e posição ficam pendentes
+ * em memória e são gravadas em lote, em uma única transação, pela thread de segundo plano.
+ * O lote usa uma conexão própria e só segura o monitor para trocar o mapa de pendentes, então
+ * o commit não atrasa as consultas da thread do servidor.
+ */
+public class SqlUserStore implements UserStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SqlUserStore.class);
+    private static final String DRIVER = "org.h2.Driver";
+    // Extensão do arquivo criado pelo H2 a partir do nome do banco
+    private static final String FILE_SUFFIX = ".mv.db";
+
+    private static final String CREATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS users ("
+            + "user_key VARCHAR(32) PRIMARY KEY, "
+            + "username VARCHAR(32) NOT NULL, "
+            + "password_hash VARCHAR(160) NOT NULL, "
+            + "registration_date BIGINT NOT NULL, "
+            + "last_login BIGINT NOT NULL, "
+            + "pos_x DOUBLE PRECISION, pos_y DOUBLE PRECISION, pos_z DOUBLE PRECISION, "
+            + "pos_yaw REAL, pos_pitch REAL, pos_dimension VARCHAR(255))";
+    private static final String COLUMNS =
+            "username, password_hash, registration_date, last_login, pos_x, pos_y, pos_z, pos_yaw, pos_pitch, pos_dimension";
+
+    private final Path database;
+    private Driver driver;
+    // Consultas e registros (protegidos pelo monitor desta instância)
+    private Connection connection;
+    // Lotes de atualizações, em transação (protegidos por flushLock)
+    private Connection writer;
+    private final Object flushLock = new Object();
+
+    // Consultas preparadas da conexão principal
+    private PreparedStatement insert;
+    private PreparedStatement select;
+    private PreparedStatement selectHash;
+    private PreparedStatement exists;
+    // Atualizações preparadas da conexão do lote
+    private PreparedStatement updateLogin;
+    private PreparedStatement updatePassword;
+    private PreparedStatement updatePosition;
+
+    // Atualizações ainda não gravadas e as do lote em gravação; ambas são sobrepostas às leituras
+    private PendingUpdates pending = new PendingUpdates();
+    private PendingUpdates flushing = new PendingUpdates();
+    private int count;
+
+    // Métricas
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedUpdates = new AtomicLong();
+    private volatile long lastBatchNanos;
+
+    /**
+     * @param database caminho do banco sem extensão (o H2 acrescenta {@value #FILE_SUFFIX})
+     */
+    public SqlUserStore(Path database) {
+        this.database = database;
+    }
+
+    @Override
+    public void load() throws IOException {
+        // Mesma ordem de travas do lote: flushLock e depois o monitor
+        synchronized (flushLock) {
+            open();
+        }
+    }
+
+    private synchronized void open() throws IOException {
+        boolean migrate = !Files.exists(database.resolveSibling(database.getFileName() + FILE_SUFFIX));
+
+        try {
+            // O driver é instanciado diretamente: o DriverManager não enxerga as classes do mod
+            driver = (Driver) Class.forName(DRIVER).getDeclaredConstructor().newInstance();
+            connection = connect();
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_TABLE);
+            }
+            insert = connection.prepareStatement("INSERT INTO users (user_key, " + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            select = connection.prepareStatement("SELECT " + COLUMNS + " FROM users WHERE user_key = ?");
+            selectHash = connection.prepareStatement("SELECT password_hash FROM users WHERE user_key = ?");
+            exists = connection.prepareStatement("SELECT 1 FROM users WHERE user_key = ?");
+
+            writer = connect();
+            writer.setAutoCommit(false);
+            updateLogin = writer.prepareStatement("UPDATE users SET last_login = ? WHERE user_key = ?");
+            updatePassword = writer.prepareStatement("UPDATE users SET password_hash = ? WHERE user_key = ?");
+            updatePosition = writer.prepareStatement(
+                    "UPDATE users SET pos_x = ?, pos_y = ?, pos_z = ?, pos_yaw = ?, pos_pitch = ?, pos_dimension = ? WHERE user_key = ?");
+
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM users")) {
+                result.next();
+                count = result.getInt(1);
+            }
+
+            if (migrate) {
+                // Toda a cópia em uma transação
+                connection.setAutoCommit(false);
+                try {
+                    if (!JsonUserStore.migrateInto(this)) {
+                        throw new IOException("Dados JSON ilegíveis, migração cancelada");
+                    }
+                    connection.commit();
+                } catch (IOException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                LOGGER.info("{} contas migradas para o banco {}", count, database);
+            }
+        } catch (ReflectiveOperationException e) {
+            close();
+            throw new IOException("Driver H2 não encontrado", e);
+        } catch (SQLException | IOException | RuntimeException e) {
+            close();
+            if (migrate) {
+                deleteDatabaseFiles();
+            }
+            throw e instanceof IOException io ? io : new IOException("Erro ao abrir banco " + database, e);
+        }
+    }
+
+    @Override
+    public synchronized boolean register(String key, UserDataManager.UserData data) throws IOException {
+        try {
+            if (rowExists(key)) {
+                return false;
+            }
+            insert.setString(1, key);
+            insert.setString(2, data.username);
+            insert.setString(3, data.passwordHash);
+            insert.setLong(4, data.registrationDate);
+            insert.setLong(5, data.lastLogin);
+            setPosition(insert, 6, data.lastPosition);
+            insert.executeUpdate();
+            count++;
+            return true;
+        } catch (SQLException e) {
+            throw new IOException("Erro ao registrar " + key, e);
+        }
+    }
+
+    @Override
+    public synchronized UserDataManager.UserData lookup(String key) {
+        try {
+            select.setString(1, key);
+            try (ResultSet result = select.executeQuery()) {
+                if (!result.next()) {
+                    return null;
+                }
+                return overlayPending(key, readUser(result, 1));
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Erro ao ler conta {} do banco: ", key, e);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized boolean contains(String key) {
+        try {
+            return rowExists(key);
+        } catch (SQLException e) {
+            LOGGER.error("Erro ao consultar conta {} no banco: ", key, e);
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized String passwordHash(String key) {
+        String newer = pending.passwords.get(key);
+        if (newer == null) {
+            newer = flushing.passwords.get(key);
+        }
+        if (newer != null) {
+            return newer;
+        }
+        try {
+            selectHash.setString(1, key);
+            try (ResultSet result = selectHash.executeQuery()) {
+                return result.next() ? result.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Erro ao ler senha de {} do banco: ", key, e);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void updateLastLogin(String key, long lastLogin) {
+        if (isClosed(key)) {
+            return;
+        }
+        pending.logins.put(key, lastLogin);
+    }
+
+    @Override
+    public synchronized void updatePassword(String key, String passwordHash) {
+        if (isClosed(key)) {
+            return;
+        }
+        pending.passwords.put(key, passwordHash);
+    }
+
+    @Override
+    public synchronized void updatePosition(String key, UserDataManager.PlayerPosition position) {
+        if (isClosed(key)) {
+            return;
+        }
+        pending.positions.put(key, position);
+    }
+
+    /**
+     * Depois de {@link #stop()} nada mais seria gravado: a atualização é recusada e registrada
+     * no log em vez de ficar pendente para sempre
+     */
+    private boolean isClosed(String key) {
+        if (writer != null) {
+            return false;
+        }
+        LOGGER.warn("Banco {} já fechado, atualização de {} descartada", database, key);
+        return true;
+    }
+
+    @Override
+    public synchronized void forEach(BiConsumer<String, UserDataManager.UserData> consumer) {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT user_key, " + COLUMNS + " FROM users")) {
+            while (result.next()) {
+                String key = result.getString(1);
+                consumer.accept(key, overlayPending(key, readUser(result, 2)));
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Erro ao percorrer contas do banco: ", e);
+        }
+    }
+
+    /**
+     * Lê apenas a coluna da chave primária
+     */
+    @Override
+    public synchronized void forEachKey(Consumer<String> consumer) {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT user_key FROM users")) {
+            while (result.next()) {
+                consumer.accept(result.getString(1));
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Erro ao percorrer contas do banco: ", e);
+        }
+    }
+
+    @Override
+    public synchronized int count() {
+        return count;
+    }
+
+    /**
+     * Grava as atualizações pendentes em lote, em uma única transação na conexão do lote. O monitor
+     * só é usado para trocar o mapa de pendentes; consultas continuam durante o commit.
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (flushLock) {
+            PendingUpdates batch;
+            synchronized (this) {
+                if (writer == null || pending.size() == 0) {
+                    return;
+                }
+                batch = pending;
+                flushing = batch;
+                pending = new PendingUpdates();
+            }
+
+            int updates = batch.size();
+            long start = System.nanoTime();
+            try {
+                for (Map.Entry<String, Long> entry : batch.logins.entrySet()) {
+                    updateLogin.setLong(1, entry.getValue());
+                    updateLogin.setString(2, entry.getKey());
+                    updateLogin.addBatch();
+                }
+                for (Map.Entry<String, String> entry : batch.passwords.entrySet()) {
+                    updatePassword.setString(1, entry.getValue());
+                    updatePassword.setString(2, entry.getKey());
+                    updatePassword.addBatch();
+                }
+                for (Map.Entry<String, UserDataManager.PlayerPosition> entry : batch.positions.entrySet()) {
+                    setPosition(updatePosition, 1, entry.getValue());
+                    updatePosition.setString(7, entry.getKey());
+                    updatePosition.addBatch();
+                }
+                updateLogin.executeBatch();
+                updatePassword.executeBatch();
+                updatePosition.executeBatch();
+                writer.commit();
+
+                batches.incrementAndGet();
+                batchedUpdates.addAndGet(updates);
+                lastBatchNanos = System.nanoTime() - start;
+            } catch (SQLException e) {
+                try {
+                    writer.rollback();
+                    updateLogin.clearBatch();
+                    updatePassword.clearBatch();
+                    updatePosition.clearBatch();
+                } catch (SQLException ignored) {
+                }
+                // As atualizações voltam a ficar pendentes para a próxima tentativa
+                synchronized (this) {
+                    pending.mergeOlder(batch);
+                }
+                throw new IOException("Erro ao gravar lote de atualizações no banco", e);
+            } finally {
+                synchronized (this) {
+                    flushing = new PendingUpdates();
+                }
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Connection opened = driver.connect("jdbc:h2:" + database.toAbsolutePath(), new Properties());
+        if (opened == null) {
+            throw new SQLException("Driver H2 recusou a URL do banco " + database);
+        }
+        return opened;
+    }
+
+    /**
+     * Grava as atualizações pendentes e exporta o banco com SCRIPT TO (SQL sem compressão,
+     * restaurável com RUNSCRIPT FROM). O texto não muda enquanto os dados não mudam, então o backup
+     * compacta uma vez só e a impressão digital detecta quando não houve alteração. A exportação usa
+     * uma conexão própria, fora do monitor desta instância, então as consultas continuam enquanto
+     * ela é feita; o H2 garante a consistência.
+     */
+    @Override
+    public List<Path> copyPersistedFiles(Path directory) throws IOException {
+        synchronized (this) {
+            if (connection == null) {
+                return List.of();
+            }
+        }
+        flush();
+        Path script = directory.resolve(database.getFileName() + ".sql");
+        Files.createDirectories(directory);
+        try (Connection backup = connect();
+             Statement statement = backup.createStatement()) {
+            statement.execute("SCRIPT TO '" + script.toAbsolutePath().toString().replace("'", "''") + "'");
+        } catch (SQLException e) {
+            throw new IOException("Erro ao copiar banco " + database + " para backup", e);
+        }
+        return List.of(script);
+    }
+
+    /**
+     * Grava as atualizações pendentes e fecha o banco
+     */
+    @Override
+    public void stop() {
+        try {
+            flush();
+        } catch (IOException e) {
+            LOGGER.error("Erro ao gravar atualizações pendentes no banco: ", e);
+        }
+        close();
+    }
+
+    public void close() {
+        synchronized (flushLock) {
+            synchronized (this) {
+                writer = closeQuietly(writer);
+                connection = closeQuietly(connection);
+            }
+        }
+    }
+
+    private Connection closeQuietly(Connection opened) {
+        if (opened != null) {
+            try {
+                opened.close();
+            } catch (SQLException e) {
+                LOGGER.error("Erro ao fechar banco {}: ", database, e);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void appendStats(Map<String, Object> stats) {
+        stats.put("sqlPendingUpdates", pending.size() + flushing.size());
+        stats.put("sqlBatches", batches.get());
+        stats.put("sqlBatchedUpdates", batchedUpdates.get());
+        stats.put("sqlLastBatchMillis", lastBatchNanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+        try {
+            Path file = database.resolveSibling(database.getFileName() + FILE_SUFFIX);
+            if (Files.exists(file)) {
+                stats.put("sqlFileBytes", Files.size(file));
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private boolean rowExists(String key) throws SQLException {
+        exists.setString(1, key);
+        try (ResultSet result = exists.executeQuery()) {
+            return result.next();
+        }
+    }
+
+    /**
+     * Aplica as atualizações ainda não gravadas sobre a conta lida do banco
+     */
+    private UserDataManager.UserData overlayPending(String key, UserDataManager.UserData data) {
+        return pending.applyTo(key, flushing.applyTo(key, data));
+    }
+
+    /**
+     * Atualizações de login, senha e posição ainda não gravadas no banco
+     */
+    private static final class PendingUpdates {
+        final Map<String, Long> logins = new HashMap<>();
+        final Map<String, String> passwords = new HashMap<>();
+        final Map<String, UserDataManager.PlayerPosition> positions = new HashMap<>();
+
+        int size() {
+            return logins.size() + passwords.size() + positions.size();
+        }
+
+        UserDataManager.UserData applyTo(String key, UserDataManager.UserData data) {
+            Long lastLogin = logins.get(key);
+            if (lastLogin != null) {
+                data = data.withLastLogin(lastLogin);
+            }
+            String passwordHash = passwords.get(key);
+            if (passwordHash != null) {
+                data = data.withPasswordHash(passwordHash);
+            }
+            if (positions.containsKey(key)) {
+                data = data.withLastPosition(positions.get(key));
+            }
+            return data;
+        }
+
+        /**
+         * Recebe de volta as atualizações de um lote que falhou, sem sobrepor as mais novas
+         */
+        void mergeOlder(PendingUpdates older) {
+            older.logins.forEach(logins::putIfAbsent);
+            older.passwords.forEach(passwords::putIfAbsent);
+            for (Map.Entry<String, UserDataManager.PlayerPosition> entry : older.positions.entrySet()) {
+                if (!positions.containsKey(entry.getKey())) {
+                    positions.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Lê as colunas de {@link #COLUMNS} a partir da coluna {@code first}
+     */
+    private static UserDataManager.UserData readUser(ResultSet result, int first) throws SQLException {
+        return new UserDataManager.UserData(
+                result.getString(first),
+                result.getString(first + 1),
+                result.getLong(first + 2),
+                result.getLong(first + 3),
+                readPosition(result, first + 4));
+    }
+
+    private static void setPosition(PreparedStatement statement, int first, UserDataManager.PlayerPosition position) throws SQLException {
+        if (position == null) {
+            for (int i = 0; i < 5; i++) {
+                statement.setNull(first + i, i < 3 ? Types.DOUBLE : Types.REAL);
+            }
+            statement.setNull(first + 5, Types.VARCHAR);
+            return;
+        }
+        statement.setDouble(first, position.x);
+        statement.setDouble(first + 1, position.y);
+        statement.setDouble(first + 2, position.z);
+        statement.setFloat(first + 3, position.yaw);
+        statement.setFloat(first + 4, position.pitch);
+        statement.setString(first + 5, position.dimension);
+    }
+
+    private static UserDataManager.PlayerPosition readPosition(ResultSet result, int first) throws SQLException {
+        String dimension = result.getString(first + 5);
+        if (dimension == null) {
+            return null;
+        }
+        return new UserDataManager.PlayerPosition(
+                result.getDouble(first),
+                result.getDouble(first + 1),
+                result.getDouble(first + 2),
+                result.getFloat(first + 3),
+                result.getFloat(first + 4),
+                dimension);
+    }
+
+    private void deleteDatabaseFiles() {
+        try {
+            Files.deleteIfExists(database.resolveSibling(database.getFileName() + FILE_SUFFIX));
+            Files.deleteIfExists(database.resolveSibling(database.getFileName() + ".trace.db"));
+        } catch (IOException e) {
+            LOGGER.warn("Erro ao remover banco incompleto {}: {}", database, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.aliloginmod;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Carrega o mapa de usuários entrada por entrada com {@link JsonReader}, preenchendo o mapa
+ * de destino diretamente (sem mapa intermediário). Em arquivos grandes, uma thread só separa o
+ * texto das entradas em lotes e a decodificação dos lotes é feita em paralelo.
+ */
+public class StreamingUserLoader {
+    // Entradas por lote enviado às threads de decodificação
+    private static final int BATCH_SIZE = 512;
+    // Abaixo deste tamanho as threads de decodificação custam mais do que economizam
+    private static final long PARALLEL_MIN_BYTES = 32L * 1024 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Lê o objeto JSON {nome: UserData} e coloca cada conta no mapa de destino.
+     * Arquivos a partir de {@link #PARALLEL_MIN_BYTES} (tamanho informado em sizeBytes; 0 lê
+     * sempre nesta thread) são decodificados em paralelo. Retorna a quantidade de contas lidas.
+     */
+    public static long load(Reader in, Map<String, UserDataManager.UserData> target, Gson gson, long sizeBytes) throws IOException {
+        int threads = sizeBytes >= PARALLEL_MIN_BYTES ? Runtime.getRuntime().availableProcessors() - 1 : 0;
+        PushbackReader pushback = new PushbackReader(in, 1);
+        if (threads >= 2 && startsObject(pushback)) {
+            return loadParallel(pushback, target, gson, threads);
+        }
+
+        JsonReader reader = new JsonReader(pushback);
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return 0;
+        }
+        long count = loadSequential(reader, target, gson);
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw new JsonParseException("Conteúdo inesperado após o objeto de usuários");
+        }
+        return count;
+    }
+
+    private static long loadSequential(JsonReader reader, Map<String, UserDataManager.UserData> target, Gson gson) throws IOException {
+        TypeAdapter<UserDataManager.UserData> adapter = gson.getAdapter(UserDataManager.UserData.class);
+        long count = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            UserDataManager.UserData data = adapter.read(reader);
+            if (data != null) {
+                requireValid(key, data);
+                target.put(key, data);
+                count++;
+            }
+        }
+        reader.endObject();
+        return count;
+    }
+
+    /**
+     * Verifica, sem consumir, se o primeiro caractere além dos espaços abre um objeto
+     */
+    private static boolean startsObject(PushbackReader in) throws IOException {
+        int c;
+        do {
+            c = in.read();
+        } while (c >= 0 && Character.isWhitespace(c));
+        if (c >= 0) {
+            in.unread(c);
+        }
+        return c == '{';
+    }
+
+    /**
+     * A thread atual só acompanha aspas e chaves para achar as vírgulas entre as entradas do
+     * objeto externo e junta o texto de cada lote; as threads de decodificação leem cada lote
+     * uma única vez com o {@link TypeAdapter}, como na leitura sequencial.
+     */
+    private static long loadParallel(Reader in, Map<String, UserDataManager.UserData> target, Gson gson, int threads) throws IOException {
+        ExecutorService decoders = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "aliloginmod-user-decoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Limita os lotes em memória para não duplicar o uso de heap
+        Semaphore inFlight = new Semaphore(threads * 2);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        AtomicLong count = new AtomicLong();
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            char[] chunk = new char[CHUNK_SIZE];
+            StringBuilder batch = new StringBuilder("{");
+            int entries = 0;
+            int depth = 0;
+            boolean inString = false;
+            boolean escaped = false;
+            boolean split = false;
+            boolean closed = false;
+
+            int n;
+            while ((n = in.read(chunk)) >= 0 && failure.get() == null) {
+                int from = 0;
+                for (int i = 0; i < n; i++) {
+                    char c = chunk[i];
+                    if (closed) {
+                        if (!Character.isWhitespace(c)) {
+                            throw new JsonParseException("Conteúdo inesperado após o objeto de usuários");
+                        }
+                        continue;
+                    }
+                    if (inString) {
+                        if (escaped) {
+                            escaped = false;
+                        } else if (c == '\\') {
+                            escaped = true;
+                        } else if (c == '"') {
+                            inString = false;
+                        }
+                        continue;
+                    }
+                    switch (c) {
+                        case '"' -> inString = true;
+                        case '{', '[' -> {
+                            depth++;
+                            if (depth == 1) {
+                                from = i + 1;
+                            }
+                        }
+                        case '}', ']' -> {
+                            depth--;
+                            if (depth == 0) {
+                                batch.append(chunk, from, i - from);
+                                closed = true;
+                            }
+                        }
+                        case ',' -> {
+                            if (depth == 1 && ++entries == BATCH_SIZE) {
+                                batch.append(chunk, from, i - from);
+                                submit(batch, decoders, inFlight, futures, failure, count, target, gson);
+                                batch = new StringBuilder("{");
+                                entries = 0;
+                                from = i + 1;
+                                split = true;
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                }
+                if (!closed && depth > 0) {
+                    batch.append(chunk, from, n - from);
+                }
+            }
+
+            if (failure.get() == null) {
+                if (!closed) {
+                    throw new JsonParseException("Objeto de usuários incompleto");
+                }
+                if (split && batch.substring(1).isBlank()) {
+                    throw new JsonParseException("Vírgula sobrando no objeto de usuários");
+                }
+                submit(batch, decoders, inFlight, futures, failure, count, target, gson);
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            return count.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Carregamento de usuários interrompido", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Erro ao decodificar usuários", e.getCause());
+        } finally {
+            decoders.shutdownNow();
+        }
+    }
+
+    private static void submit(StringBuilder batch, ExecutorService decoders, Semaphore inFlight, List<Future<?>> futures,
+                               AtomicReference<RuntimeException> failure, AtomicLong count,
+                               Map<String, UserDataManager.UserData> target, Gson gson) throws InterruptedException {
+        String text = batch.append('}').toString();
+        inFlight.acquire();
+        futures.add(decoders.submit(() -> {
+            try {
+                JsonReader reader = new JsonReader(new StringReader(text));
+                count.addAndGet(loadSequential(reader, target, gson));
+            } catch (IOException e) {
+                failure.compareAndSet(null, new JsonParseException(e.getMessage(), e));
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                inFlight.release();
+            }
+        }));
+    }
+
+    /**
+     * Motivo pelo qual a conta não pode ser usada, ou null se ela for válida
+     */
+    public static String invalidReason(UserDataManager.UserData data) {
+        if (data == null) {
+            return "conta vazia";
+        }
+        if (data.username == null || data.username.isEmpty()) {
+            return "conta sem nome de usuário";
+        }
+        if (data.passwordHash == null || data.passwordHash.isEmpty()) {
+            return "conta sem hash de senha";
+        }
+        return null;
+    }
+
+    /**
+     * Uma conta inválida invalida a geração inteira; a leitura tolerante a separa das demais
+     */
+    private static void requireValid(String key, UserDataManager.UserData data) {
+        String problem = invalidReason(data);
+        if (problem != null) {
+            throw new JsonParseException("Conta inválida '" + key + "': " + problem);
+        }
+    }
+
+    /**
+     * Métricas do carregamento: tempo, vazão e pico de heap
+     */
+    public static class LoadMetrics {
+        // Amostra do heap a cada tantos bytes lidos
+        private static final long SAMPLE_INTERVAL_BYTES = 4L * 1024 * 1024;
+        private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLong maxHeapUsed = new AtomicLong();
+        private long startNanos;
+        private long startHeapUsed;
+        private volatile long lastMillis;
+        private volatile long lastEntries;
+        private volatile long lastBytes;
+        private volatile long lastHeapGrowthBytes;
+
+        public void begin() {
+            bytesRead.set(0);
+            startNanos = System.nanoTime();
+            startHeapUsed = heapUsed();
+            maxHeapUsed.set(startHeapUsed);
+        }
+
+        public void end(long entries) {
+            lastMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            lastEntries = entries;
+            lastBytes = bytesRead.get();
+
+            // Maior uso do heap amostrado durante o carregamento, acima do uso no início. Só lê o
+            // uso atual: zerar os picos das áreas do heap afetaria outras ferramentas de monitoramento
+            sample();
+            lastHeapGrowthBytes = Math.max(0, maxHeapUsed.get() - startHeapUsed);
+        }
+
+        private void sample() {
+            maxHeapUsed.accumulateAndGet(heapUsed(), Math::max);
+        }
+
+        private static long heapUsed() {
+            return MEMORY.getHeapMemoryUsage().getUsed();
+        }
+
+        private void counted(int n) {
+            long total = bytesRead.addAndGet(n);
+            if (total / SAMPLE_INTERVAL_BYTES != (total - n) / SAMPLE_INTERVAL_BYTES) {
+                sample();
+            }
+        }
+
+        /**
+         * Conta os bytes lidos de um arquivo durante o carregamento
+         */
+        public InputStream count(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        counted(1);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int n = super.read(buffer, offset, length);
+                    if (n > 0) {
+                        counted(n);
+                    }
+                    return n;
+                }
+            };
+        }
+
+        public long lastMillis() {
+            return lastMillis;
+        }
+
+        public void appendStats(Map<String, Object> stats) {
+            double seconds = Math.max(lastMillis, 1) / 1000.0;
+            stats.put("loadMillis", lastMillis);
+            stats.put("loadEntries", lastEntries);
+            stats.put("loadEntriesPerSecond", lastEntries / seconds);
+            stats.put("loadMBPerSecond", lastBytes / 1_048_576.0 / seconds);
+            stats.put("loadHeapGrowthMB", lastHeapGrowthBytes / 1_048_576.0);
+        }
+    }
+}
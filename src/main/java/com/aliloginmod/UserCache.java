@@ -0,0 +1,212 @@
+package com.aliloginmod;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cache LRU de contas carregadas sob demanda. Contas de jogadores online ficam fixadas
+ * (fora do LRU) e nunca são removidas enquanto o jogador estiver conectado.
+ *
+ * A leitura do armazenamento acontece fora do monitor: consultas a contas já em cache não
+ * esperam por ela, e pedidos simultâneos da mesma conta compartilham uma única leitura.
+ */
+public class UserCache {
+    private final int maxSize;
+    private final Function<String, UserDataManager.UserData> loader;
+    private final Map<String, UserDataManager.UserData> pinned = new HashMap<>();
+    private final LinkedHashMap<String, UserDataManager.UserData> lru;
+    // Leituras do armazenamento em andamento, por conta
+    private final Map<String, Load> loading = new ConcurrentHashMap<>();
+
+    // Métricas
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Leitura em andamento; quem pedir a mesma conta espera o mesmo resultado
+     */
+    private static final class Load {
+        final CompletableFuture<UserDataManager.UserData> future = new CompletableFuture<>();
+        // Conta alterada durante a leitura: o valor lido pode estar desatualizado (protegido pelo monitor)
+        boolean stale;
+    }
+
+    public UserCache(int maxSize, Function<String, UserDataManager.UserData> loader) {
+        this.maxSize = maxSize;
+        this.loader = loader;
+        this.lru = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserDataManager.UserData> eldest) {
+                if (size() > UserCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Obtém a conta do cache ou a carrega do armazenamento
+     */
+    public UserDataManager.UserData get(String key) {
+        return load(key, false);
+    }
+
+    /**
+     * Obtém a conta apenas se já estiver em cache (sem carregar nem contar nas métricas)
+     */
+    public synchronized UserDataManager.UserData getIfPresent(String key) {
+        UserDataManager.UserData data = pinned.get(key);
+        return data != null ? data : lru.get(key);
+    }
+
+    public synchronized void put(String key, UserDataManager.UserData data) {
+        if (pinned.containsKey(key)) {
+            pinned.put(key, data);
+        } else {
+            lru.put(key, data);
+        }
+        markStale(key);
+    }
+
+    /**
+     * Substitui a conta em cache pela versão alterada (nada acontece se ela não estiver em cache)
+     */
+    public synchronized void update(String key, UnaryOperator<UserDataManager.UserData> change) {
+        if (pinned.computeIfPresent(key, (k, data) -> change.apply(data)) == null) {
+            lru.computeIfPresent(key, (k, data) -> change.apply(data));
+        }
+        markStale(key);
+    }
+
+    /**
+     * Fixa a conta no cache (jogador online)
+     */
+    public void pin(String key) {
+        load(key, true);
+    }
+
+    /**
+     * Devolve a conta ao LRU (jogador saiu)
+     */
+    public synchronized void unpin(String key) {
+        UserDataManager.UserData data = pinned.remove(key);
+        if (data != null) {
+            lru.put(key, data);
+        }
+    }
+
+    public synchronized void clear() {
+        pinned.clear();
+        lru.clear();
+    }
+
+    /**
+     * Procura a conta no cache e, se não estiver, lê do armazenamento fora do monitor. Uma
+     * leitura já em andamento para a mesma conta é aproveitada.
+     */
+    private UserDataManager.UserData load(String key, boolean pin) {
+        boolean first = true;
+        while (true) {
+            synchronized (this) {
+                UserDataManager.UserData cached = pinned.get(key);
+                if (cached == null) {
+                    cached = pin ? lru.remove(key) : lru.get(key);
+                    if (cached != null && pin) {
+                        pinned.put(key, cached);
+                    }
+                }
+                if (cached != null) {
+                    if (first && !pin) {
+                        hits++;
+                    }
+                    return cached;
+                }
+                if (first && !pin) {
+                    misses++;
+                }
+            }
+            first = false;
+
+            Load mine = new Load();
+            Load other = loading.putIfAbsent(key, mine);
+            if (other != null) {
+                UserDataManager.UserData shared = other.future.join();
+                if (!pin || shared == null) {
+                    return shared;
+                }
+                // Carregada no LRU por outra thread: volta ao início para fixá-la
+                continue;
+            }
+            try {
+                UserDataManager.UserData loaded = readFresh(key, mine, pin);
+                mine.future.complete(loaded);
+                return loaded;
+            } catch (RuntimeException e) {
+                mine.future.completeExceptionally(e);
+                throw e;
+            } finally {
+                loading.remove(key, mine);
+            }
+        }
+    }
+
+    /**
+     * Lê a conta do armazenamento e a coloca no cache, lendo de novo se ela foi alterada no meio
+     */
+    private UserDataManager.UserData readFresh(String key, Load load, boolean pin) {
+        while (true) {
+            synchronized (this) {
+                load.stale = false;
+            }
+            UserDataManager.UserData loaded = loader.apply(key);
+            synchronized (this) {
+                if (load.stale) {
+                    continue;
+                }
+                // Uma conta registrada durante a leitura já está no cache e é a mais nova
+                UserDataManager.UserData current = pinned.get(key);
+                if (current == null) {
+                    current = pin ? lru.remove(key) : lru.get(key);
+                }
+                UserDataManager.UserData data = current != null ? current : loaded;
+                if (data != null) {
+                    if (pin) {
+                        pinned.put(key, data);
+                    } else if (!pinned.containsKey(key)) {
+                        lru.put(key, data);
+                    }
+                }
+                return data;
+            }
+        }
+    }
+
+    private void markStale(String key) {
+        Load load = loading.get(key);
+        if (load != null) {
+            load.stale = true;
+        }
+    }
+
+    /**
+     * Adiciona as métricas do cache ao mapa de estatísticas
+     */
+    public synchronized void appendStats(Map<String, Object> stats) {
+        long lookups = hits + misses;
+        stats.put("userCacheSize", lru.size());
+        stats.put("userCachePinned", pinned.size());
+        stats.put("userCacheHits", hits);
+        stats.put("userCacheMisses", misses);
+        stats.put("userCacheHitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        stats.put("userCacheEvictions", evictions);
+        stats.put("userCacheLoading", loading.size());
+    }
+}
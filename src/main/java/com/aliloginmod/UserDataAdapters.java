@@ -0,0 +1,136 @@
+package com.aliloginmod;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Adaptadores Gson escritos à mão para as contas: leem e escrevem os campos direto no
+ * stream, sem reflexão. O JSON gerado tem os mesmos nomes de campos do formato anterior.
+ */
+public class UserDataAdapters {
+
+    /**
+     * Cria o Gson usado nos arquivos de dados, compacto ou com indentação
+     */
+    public static Gson createGson(boolean prettyPrint) {
+        GsonBuilder builder = register(new GsonBuilder());
+        if (prettyPrint) {
+            builder.setPrettyPrinting();
+        }
+        return builder.create();
+    }
+
+    public static GsonBuilder register(GsonBuilder builder) {
+        PlayerPositionAdapter positionAdapter = new PlayerPositionAdapter();
+        return builder
+                .registerTypeAdapter(UserDataManager.PlayerPosition.class, positionAdapter.nullSafe())
+                .registerTypeAdapter(UserDataManager.UserData.class, new UserDataAdapter(positionAdapter).nullSafe());
+    }
+
+    public static class UserDataAdapter extends TypeAdapter<UserDataManager.UserData> {
+        private final PlayerPositionAdapter positionAdapter;
+
+        public UserDataAdapter(PlayerPositionAdapter positionAdapter) {
+            this.positionAdapter = positionAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, UserDataManager.UserData data) throws IOException {
+            out.beginObject();
+            if (data.username != null) {
+                out.name("username").value(data.username);
+            }
+            if (data.passwordHash != null) {
+                out.name("passwordHash").value(data.passwordHash);
+            }
+            out.name("registrationDate").value(data.registrationDate);
+            out.name("lastLogin").value(data.lastLogin);
+            // Campos nulos são omitidos, como na serialização por reflexão
+            if (data.lastPosition != null) {
+                out.name("lastPosition");
+                positionAdapter.write(out, data.lastPosition);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public UserDataManager.UserData read(JsonReader in) throws IOException {
+            String username = null;
+            String passwordHash = null;
+            long registrationDate = 0;
+            long lastLogin = 0;
+            UserDataManager.PlayerPosition lastPosition = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "username" -> username = in.nextString();
+                    case "passwordHash" -> passwordHash = in.nextString();
+                    case "registrationDate" -> registrationDate = in.nextLong();
+                    case "lastLogin" -> lastLogin = in.nextLong();
+                    case "lastPosition" -> lastPosition = positionAdapter.read(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new UserDataManager.UserData(username, passwordHash, registrationDate, lastLogin, lastPosition);
+        }
+    }
+
+    public static class PlayerPositionAdapter extends TypeAdapter<UserDataManager.PlayerPosition> {
+        @Override
+        public void write(JsonWriter out, UserDataManager.PlayerPosition position) throws IOException {
+            out.beginObject();
+            out.name("x").value(position.x);
+            out.name("y").value(position.y);
+            out.name("z").value(position.z);
+            out.name("yaw").value(position.yaw);
+            out.name("pitch").value(position.pitch);
+            if (position.dimension != null) {
+                out.name("dimension").value(position.dimension);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public UserDataManager.PlayerPosition read(JsonReader in) throws IOException {
+            double x = 0;
+            double y = 0;
+            double z = 0;
+            float yaw = 0;
+            float pitch = 0;
+            String dimension = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "x" -> x = in.nextDouble();
+                    case "y" -> y = in.nextDouble();
+                    case "z" -> z = in.nextDouble();
+                    case "yaw" -> yaw = (float) in.nextDouble();
+                    case "pitch" -> pitch = (float) in.nextDouble();
+                    case "dimension" -> dimension = in.nextString();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new UserDataManager.PlayerPosition(x, y, z, yaw, pitch, dimension);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.aliloginmod;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Backups periódicos dos dados de usuários, feitos em uma thread própria.
+ *
+ * O armazenamento copia seus dados para um diretório temporário em um instante consistente, sem
+ * bloquear as consultas (cópia de arquivo, dos bytes mapeados ou SCRIPT do H2, conforme o
+ * armazenamento) e a compactação em zip acontece depois, sem bloquear alterações. O backup é
+ * pulado quando nada mudou desde o anterior.
+ */
+public class UserDataBackups {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserDataBackups.class);
+
+    private static final String PREFIX = "aliloginmod_users-";
+    private static final String SUFFIX = ".zip";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss", Locale.ROOT);
+    // Comentário do zip com a impressão digital do conteúdo, usada para pular backups idênticos
+    private static final String FINGERPRINT_PREFIX = "fingerprint=";
+
+    @FunctionalInterface
+    public interface Stager {
+        /**
+         * Copia os arquivos dos dados para o diretório e retorna os arquivos copiados
+         */
+        List<Path> stage(Path directory) throws IOException;
+    }
+
+    private final Path directory;
+    private final Stager stager;
+    // Contador de alterações; igual ao do último backup significa que nada mudou
+    private final LongSupplier mutationCount;
+
+    private ScheduledExecutorService executor;
+    // Serializa os backups (agendados e manuais) sem usar o monitor de start/shutdown
+    private final Object backupLock = new Object();
+    private long lastMutationCount = -1;
+    private String lastFingerprint;
+
+    // Métricas
+    private final AtomicLong backups = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastBackupNanos;
+    private volatile long lastSourceBytes;
+    private volatile long lastArchiveBytes;
+    private volatile long lastBackupAt;
+
+    public UserDataBackups(Path directory, Stager stager, LongSupplier mutationCount) {
+        this.directory = directory;
+        this.stager = stager;
+        this.mutationCount = mutationCount;
+    }
+
+    /**
+     * Inicia os backups periódicos (idempotente)
+     */
+    public synchronized void start(long intervalMillis, int retention) {
+        if (executor != null || intervalMillis <= 0) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "aliloginmod-backup");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> runBackup(retention), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        LOGGER.info("Backups de usuários a cada {} min em {} (mantendo {})",
+                   TimeUnit.MILLISECONDS.toMinutes(intervalMillis), directory, retention);
+    }
+
+    /**
+     * Para os backups, aguardando um backup em andamento terminar
+     */
+    public synchronized void shutdown() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+    }
+
+    /**
+     * Faz um backup agora, se algo mudou desde o último. Retorna o arquivo criado ou null.
+     */
+    public Path runBackup(int retention) {
+        synchronized (backupLock) {
+            return backup(retention);
+        }
+    }
+
+    private Path backup(int retention) {
+        // Lido antes da cópia: uma alteração durante o backup dispara o próximo
+        long mutations = mutationCount.getAsLong();
+        if (mutations == lastMutationCount) {
+            skipped.incrementAndGet();
+            return null;
+        }
+
+        long start = System.nanoTime();
+        Path staging = null;
+        Path tmp = null;
+        try {
+            Files.createDirectories(directory);
+            staging = Files.createTempDirectory(directory, ".staging-");
+            List<Path> files = stager.stage(staging);
+
+            Path target = directory.resolve(PREFIX + LocalDateTime.now().format(TIMESTAMP) + SUFFIX);
+            tmp = AtomicSnapshotWriter.sibling(target, AtomicSnapshotWriter.TMP_SUFFIX);
+            long sourceBytes = 0;
+            CRC32 fingerprint = new CRC32();
+
+            try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+                WritableByteChannel out = Channels.newChannel(zip);
+                for (Path file : files) {
+                    String name = staging.relativize(file).toString().replace('\\', '/');
+                    ZipEntry entry = new ZipEntry(name);
+                    entry.setTime(Files.getLastModifiedTime(file).toMillis());
+                    zip.putNextEntry(entry);
+                    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                        sourceBytes += transferFully(in, out);
+                    }
+                    zip.closeEntry();
+                    fingerprint.update((name + ':' + entry.getCrc() + ':' + entry.getSize() + '\n').getBytes(StandardCharsets.UTF_8));
+                }
+                zip.setComment(FINGERPRINT_PREFIX + Long.toHexString(fingerprint.getValue()));
+            }
+
+            String current = Long.toHexString(fingerprint.getValue());
+            if (current.equals(previousFingerprint())) {
+                // Contador mudou mas o conteúdo não (ex.: servidor reiniciado sem alterações)
+                Files.delete(tmp);
+                lastMutationCount = mutations;
+                skipped.incrementAndGet();
+                return null;
+            }
+
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            lastFingerprint = current;
+            lastMutationCount = mutations;
+
+            lastBackupNanos = System.nanoTime() - start;
+            lastSourceBytes = sourceBytes;
+            lastArchiveBytes = Files.size(target);
+            lastBackupAt = System.currentTimeMillis();
+            backups.incrementAndGet();
+            LOGGER.info("Backup de usuários criado em {} ms: {} ({} bytes, {} bytes sem compressão)",
+                       lastBackupNanos / 1_000_000, target, lastArchiveBytes, sourceBytes);
+
+            prune(retention);
+            return target;
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            LOGGER.error("Erro ao criar backup dos dados de usuários: ", e);
+            return null;
+        } finally {
+            if (tmp != null) {
+                deleteQuietly(tmp);
+            }
+            if (staging != null) {
+                deleteTree(staging);
+            }
+        }
+    }
+
+    /**
+     * Copia um arquivo de canal para canal (o sistema operacional copia sem passar pelo heap)
+     */
+    public static void copyFile(Path source, Path target) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            transferFully(in, out);
+        }
+    }
+
+    private static long transferFully(FileChannel in, WritableByteChannel out) throws IOException {
+        long size = in.size();
+        long position = 0;
+        while (position < size) {
+            position += in.transferTo(position, size - position, out);
+        }
+        return size;
+    }
+
+    /**
+     * Impressão digital do backup mais recente (lida do arquivo na primeira vez)
+     */
+    private String previousFingerprint() {
+        if (lastFingerprint != null) {
+            return lastFingerprint;
+        }
+        List<Path> existing = existingBackups();
+        if (existing.isEmpty()) {
+            return null;
+        }
+        try (ZipFile zip = new ZipFile(existing.get(existing.size() - 1).toFile())) {
+            String comment = zip.getComment();
+            if (comment != null && comment.startsWith(FINGERPRINT_PREFIX)) {
+                lastFingerprint = comment.substring(FINGERPRINT_PREFIX.length());
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Backup mais recente ilegível: {}", e.getMessage());
+        }
+        return lastFingerprint;
+    }
+
+    /**
+     * Apaga os backups mais antigos além da quantidade mantida
+     */
+    private void prune(int retention) {
+        List<Path> existing = existingBackups();
+        for (int i = 0; i < existing.size() - retention; i++) {
+            deleteQuietly(existing.get(i));
+        }
+    }
+
+    /**
+     * Backups existentes, do mais antigo para o mais recente (o nome contém a data)
+     */
+    private List<Path> existingBackups() {
+        List<Path> found = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(found::add);
+        } catch (NoSuchFileException e) {
+            return found;
+        } catch (IOException e) {
+            LOGGER.warn("Erro ao listar backups em {}: {}", directory, e.getMessage());
+        }
+        found.sort(Comparator.comparing(path -> path.getFileName().toString()));
+        return found;
+    }
+
+    private static void deleteTree(Path root) {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(UserDataBackups::deleteQuietly);
+        } catch (IOException e) {
+            LOGGER.warn("Erro ao remover diretório temporário {}: {}", root, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.warn("Erro ao remover {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Adiciona as métricas de backup ao mapa de estatísticas
+     */
+    public void appendStats(Map<String, Object> stats) {
+        stats.put("backupCount", backups.get());
+        stats.put("backupSkipped", skipped.get());
+        stats.put("backupFailures", failures.get());
+        stats.put("backupLastMillis", lastBackupNanos / 1_000_000.0);
+        stats.put("backupLastBytes", lastArchiveBytes);
+        stats.put("backupLastSourceBytes", lastSourceBytes);
+        stats.put("backupLastAt", lastBackupAt);
+    }
+}
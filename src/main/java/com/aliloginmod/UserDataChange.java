@@ -0,0 +1,77 @@
+package com.aliloginmod;
+
+import java.util.Map;
+
+/**
+ * Alteração pontual em uma conta. Cada registro carrega apenas o valor final do campo
+ * alterado, então reaplicar os registros em ordem sempre converge para o mesmo estado.
+ */
+public class UserDataChange {
+    public enum Type {
+        REGISTER,
+        LOGIN,
+        PASSWORD,
+        POSITION
+    }
+
+    public Type type;
+    public String user;
+    public UserDataManager.UserData data;
+    public long lastLogin;
+    public String passwordHash;
+    public UserDataManager.PlayerPosition position;
+
+    public static UserDataChange register(String user, UserDataManager.UserData data) {
+        UserDataChange change = new UserDataChange(Type.REGISTER, user);
+        change.data = data;
+        return change;
+    }
+
+    public static UserDataChange login(String user, long lastLogin) {
+        UserDataChange change = new UserDataChange(Type.LOGIN, user);
+        change.lastLogin = lastLogin;
+        return change;
+    }
+
+    public static UserDataChange password(String user, String passwordHash) {
+        UserDataChange change = new UserDataChange(Type.PASSWORD, user);
+        change.passwordHash = passwordHash;
+        return change;
+    }
+
+    public static UserDataChange position(String user, UserDataManager.PlayerPosition position) {
+        UserDataChange change = new UserDataChange(Type.POSITION, user);
+        change.position = position;
+        return change;
+    }
+
+    private UserDataChange(Type type, String user) {
+        this.type = type;
+        this.user = user;
+    }
+
+    /**
+     * Aplica a alteração sobre um mapa de usuários
+     */
+    public boolean applyTo(Map<String, UserDataManager.UserData> users) {
+        if (type == null || user == null) {
+            return false;
+        }
+
+        if (type == Type.REGISTER) {
+            if (data == null) {
+                return false;
+            }
+            users.put(user, data);
+            return true;
+        }
+
+        // Substitui a conta por uma nova instância de forma atômica
+        return users.computeIfPresent(user, (key, userData) -> switch (type) {
+            case LOGIN -> userData.withLastLogin(lastLogin);
+            case PASSWORD -> userData.withPasswordHash(passwordHash);
+            case POSITION -> userData.withLastPosition(position);
+            case REGISTER -> data;
+        }) != null;
+    }
+}
@@ -0,0 +1,259 @@
+package com.aliloginmod;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diário (journal) de alterações das contas: cada alteração é anexada como uma linha JSON
+ * pequena, e um compactador em segundo plano incorpora o diário em um novo snapshot quando
+ * ele passa do tamanho ou da idade configurados.
+ */
+public class UserDataJournal {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserDataJournal.class);
+    private static final Gson GSON = UserDataAdapters.createGson(false);
+
+    // Intervalo de verificação do compactador
+    private static final long COMPACT_CHECK_SECONDS = 10;
+
+    @FunctionalInterface
+    public interface SnapshotAction {
+        void run() throws IOException;
+    }
+
+    private final Path file;
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+
+    private volatile FileChannel channel;
+    private ScheduledExecutorService compactor;
+    private String failedBatch;
+    private volatile long firstRecordAt;
+
+    // Métricas
+    private final AtomicLong recordsAppended = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private volatile long lastCompactionNanos;
+
+    public UserDataJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Reaplica os registros do diário sobre o mapa de usuários.
+     * Uma última linha incompleta (queda durante a escrita) é ignorada.
+     */
+    public static int replay(Path file, Map<String, UserDataManager.UserData> users) {
+        if (!Files.isRegularFile(file)) {
+            return 0;
+        }
+
+        int applied = 0;
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    UserDataChange change = GSON.fromJson(line, UserDataChange.class);
+                    if (change != null && change.applyTo(users)) {
+                        applied++;
+                    }
+                } catch (JsonParseException e) {
+                    LOGGER.warn("Registro inválido na linha {} do diário {}, ignorando: {}", lineNumber, file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Erro ao ler diário de usuários {}: ", file, e);
+        }
+        return applied;
+    }
+
+    /**
+     * Abre o diário para anexar novos registros (idempotente)
+     */
+    public synchronized void open() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (channel.size() > 0) {
+            firstRecordAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Enfileira um registro; a gravação acontece em {@link #sync()}
+     */
+    public void append(UserDataChange change) {
+        pending.add(GSON.toJson(change));
+        recordsAppended.incrementAndGet();
+    }
+
+    /**
+     * Grava os registros enfileirados e força para o disco
+     */
+    public synchronized void sync() throws IOException {
+        if (channel == null || (pending.isEmpty() && failedBatch == null)) {
+            return;
+        }
+
+        StringBuilder batch = new StringBuilder();
+        if (failedBatch != null) {
+            batch.append(failedBatch);
+            failedBatch = null;
+        }
+        String line;
+        while ((line = pending.poll()) != null) {
+            batch.append(line).append('\n');
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // Registros são idempotentes: repetir o lote inteiro na próxima tentativa é seguro
+            failedBatch = batch.toString();
+            throw e;
+        }
+
+        if (firstRecordAt == 0) {
+            firstRecordAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Grava os registros enfileirados e executa a ação sem que uma compactação aconteça no meio,
+     * de modo que o snapshot e o diário vistos pela ação correspondem ao mesmo instante
+     */
+    public synchronized void runSynced(SnapshotAction action) throws IOException {
+        sync();
+        action.run();
+    }
+
+    /**
+     * Verifica se o diário passou do tamanho ou da idade limite
+     */
+    public boolean needsCompaction(long maxBytes, long maxAgeMillis) {
+        long since = firstRecordAt;
+        return size() >= maxBytes || (since != 0 && System.currentTimeMillis() - since >= maxAgeMillis);
+    }
+
+    /**
+     * Incorpora o diário em um novo snapshot e o esvazia.
+     * Registros que chegarem durante o snapshot ficam na fila e são anexados depois.
+     */
+    public synchronized void compact(SnapshotAction snapshot) throws IOException {
+        if (channel == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        sync();
+        snapshot.run();
+        channel.truncate(0);
+        channel.force(true);
+        firstRecordAt = 0;
+
+        lastCompactionNanos = System.nanoTime() - start;
+        compactions.incrementAndGet();
+        LOGGER.info("Diário de usuários compactado em {} ms", lastCompactionNanos / 1_000_000.0);
+    }
+
+    /**
+     * Inicia a verificação periódica de compactação
+     */
+    public synchronized void startCompactor(long maxBytes, long maxAgeMillis, SnapshotAction snapshot) {
+        if (compactor != null) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "aliloginmod-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                if (needsCompaction(maxBytes, maxAgeMillis)) {
+                    compact(snapshot);
+                }
+            } catch (Exception e) {
+                LOGGER.error("Erro ao compactar diário de usuários: ", e);
+            }
+        }, COMPACT_CHECK_SECONDS, COMPACT_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Para o compactador, grava o que estiver pendente e fecha o diário
+     */
+    public void close() {
+        ScheduledExecutorService current;
+        synchronized (this) {
+            current = compactor;
+            compactor = null;
+        }
+        // Aguarda fora do lock para não bloquear uma compactação em andamento
+        if (current != null) {
+            current.shutdown();
+            try {
+                current.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+            try {
+                sync();
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                }
+            } catch (IOException e) {
+                LOGGER.error("Erro ao fechar diário de usuários: ", e);
+            }
+        }
+    }
+
+    public long size() {
+        try {
+            FileChannel current = channel;
+            return current != null ? current.size() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Adiciona as métricas do diário ao mapa de estatísticas
+     */
+    public void appendStats(Map<String, Object> stats) {
+        stats.put("journalBytes", size());
+        stats.put("journalPendingRecords", pending.size());
+        stats.put("journalRecordsAppended", recordsAppended.get());
+        stats.put("journalCompactions", compactions.get());
+        stats.put("journalLastCompactionMillis", lastCompactionNanos / 1_000_000.0);
+    }
+}
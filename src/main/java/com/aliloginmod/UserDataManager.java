@@ -1,8 +1,5 @@
 package com.aliloginmod;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
@@ -13,47 +10,88 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class UserDataManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(UserDataManager.class);
-    private static final String DATA_FILE = "aliloginmod_users.json";
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String MAPPED_FILE = "aliloginmod_users.mmap";
+    private static final String SQL_DATABASE = "aliloginmod_users";
+    private static final String BACKUP_DIR = "backups";
     
-    // Armazena dados dos usuários registrados
-    private static final Map<String, UserData> registeredUsers = new ConcurrentHashMap<>();
+    // Armazenamento das contas registradas (escolhido em Config.storageBackend)
+    private static volatile UserStore store = new JsonUserStore(new StreamingUserLoader.LoadMetrics());
     
     // Armazena jogadores atualmente logados na sessão
     private static final Set<UUID> loggedInPlayers = ConcurrentHashMap.newKeySet();
     
-    public static class UserData {
-        public String username;
-        public String passwordHash;
-        public long registrationDate;
-        public long lastLogin;
-        public PlayerPosition lastPosition;
+    // Agrupa as alterações e grava em segundo plano
+    private static final WriteBehindFlusher FLUSHER = new WriteBehindFlusher("aliloginmod-userdata-flush", UserDataManager::flushPending);
+    
+    // Métricas do último carregamento
+    private static final StreamingUserLoader.LoadMetrics LOAD_METRICS = new StreamingUserLoader.LoadMetrics();
+    
+    // Backups compactados periódicos, pulados quando não houve alterações
+    private static final UserDataBackups BACKUPS = new UserDataBackups(Paths.get(BACKUP_DIR),
+            UserDataManager::stageBackup, FLUSHER::mutationCount);
+    
+    // Envia cada alteração, com número de sequência, para o diretório de reserva
+    private static final UserDataReplicator REPLICATOR = new UserDataReplicator(() -> store);
+    
+    // Threads do hash de senhas, fora da thread do servidor
+    private static final AuthWorkerPool AUTH = new AuthWorkerPool();
+    
+    // Contas registradas por IP, para limitar registros em massa
+    private static final RegistrationIndex REGISTRATIONS = new RegistrationIndex(Paths.get("aliloginmod_ip_index.dat"));
+    
+    /**
+     * Dados imutáveis de uma conta; alterações criam uma nova instância que substitui a anterior no mapa
+     */
+    public static final class UserData {
+        public final String username;
+        public final String passwordHash;
+        public final long registrationDate;
+        public final long lastLogin;
+        public final PlayerPosition lastPosition;
         
         public UserData(String username, String passwordHash) {
+            this(username, passwordHash, System.currentTimeMillis(), 0, null);
+        }
+        
+        public UserData(String username, String passwordHash, long registrationDate, long lastLogin, PlayerPosition lastPosition) {
             this.username = username;
             this.passwordHash = passwordHash;
-            this.registrationDate = System.currentTimeMillis();
-            this.lastLogin = 0;
-            this.lastPosition = null;
+            this.registrationDate = registrationDate;
+            this.lastLogin = lastLogin;
+            this.lastPosition = lastPosition;
+        }
+        
+        public UserData withLastLogin(long lastLogin) {
+            return new UserData(username, passwordHash, registrationDate, lastLogin, lastPosition);
+        }
+        
+        public UserData withPasswordHash(String passwordHash) {
+            return new UserData(username, passwordHash, registrationDate, lastLogin, lastPosition);
+        }
+        
+        public UserData withLastPosition(PlayerPosition lastPosition) {
+            return new UserData(username, passwordHash, registrationDate, lastLogin, lastPosition);
         }
     }
     
-    public static class PlayerPosition {
-        public double x;
-        public double y;
-        public double z;
-        public float yaw;
-        public float pitch;
-        public String dimension;
+    public static final class PlayerPosition {
+        public final double x;
+        public final double y;
+        public final double z;
+        public final float yaw;
+        public final float pitch;
+        public final String dimension;
         
         public PlayerPosition(double x, double y, double z, float yaw, float pitch, String dimension) {
             this.x = x;
@@ -65,37 +103,95 @@ public class UserDataManager {
         }
     }
     
+    // Carregamento em segundo plano do servidor atual (null antes de começar e após o desligamento)
+    private static CompletableFuture<Void> preload;
+    
+    // Tempo em que a thread do servidor ficou esperando o carregamento terminar
+    private static volatile long lastLoadWaitMillis;
+    
     /**
-     * Carrega os dados dos usuários do arquivo JSON
+     * Inicia o carregamento dos dados em uma thread própria, em paralelo com o carregamento
+     * do mundo (idempotente até o desligamento do servidor)
      */
-    public static void loadUserData() {
-        File dataFile = new File(DATA_FILE);
-        if (!dataFile.exists()) {
-            LOGGER.info("Arquivo de dados de usuários não encontrado. Criando novo...");
-            saveUserData();
+    public static synchronized void preloadUserData() {
+        if (preload != null) {
+            return;
+        }
+        preload = CompletableFuture.runAsync(UserDataManager::loadUserData, runnable -> {
+            Thread thread = new Thread(runnable, "aliloginmod-preload");
+            thread.setDaemon(true);
+            thread.start();
+        });
+        LOGGER.debug("Carregamento de usuários iniciado em segundo plano");
+    }
+    
+    /**
+     * Aguarda o fim do carregamento em segundo plano, se houver um em andamento
+     */
+    public static void awaitUserData() {
+        CompletableFuture<Void> current;
+        synchronized (UserDataManager.class) {
+            current = preload;
+        }
+        if (current == null || current.isDone()) {
             return;
         }
         
-        try (FileReader reader = new FileReader(dataFile, StandardCharsets.UTF_8)) {
-            Type type = new TypeToken<Map<String, UserData>>(){}.getType();
-            Map<String, UserData> loadedData = GSON.fromJson(reader, type);
-            
-            if (loadedData != null) {
-                registeredUsers.clear();
-                registeredUsers.putAll(loadedData);
-                LOGGER.info("Carregados {} usuários registrados", registeredUsers.size());
-            }
+        long start = System.nanoTime();
+        try {
+            current.join();
+        } catch (CompletionException | CancellationException e) {
+            LOGGER.error("Erro no carregamento de usuários em segundo plano: ", e.getCause() != null ? e.getCause() : e);
+        }
+        lastLoadWaitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOGGER.info("Aguardou {} ms pelo carregamento dos usuários", lastLoadWaitMillis);
+    }
+    
+    /**
+     * Carrega os dados dos usuários do armazenamento configurado
+     */
+    public static void loadUserData() {
+        LOAD_METRICS.begin();
+        
+        UserStore created = createStore(Config.storageBackend);
+        try {
+            created.load();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Erro ao abrir armazenamento {}, usando arquivos JSON: ", Config.storageBackend, e);
+            created = new JsonUserStore(LOAD_METRICS);
+            loadQuietly(created);
+        }
+        store = created;
+        
+        LOAD_METRICS.end(created.count());
+        LOGGER.info("Carregados {} usuários registrados em {} ms", created.count(), LOAD_METRICS.lastMillis());
+    }
+    
+    private static UserStore createStore(Config.StorageBackend backend) {
+        if (Config.lazyHydration && backend == Config.StorageBackend.JSON) {
+            LOGGER.warn("lazyHydration requer storageBackend = MMAP ou SQL; carregando todas as contas");
+        }
+        return switch (backend) {
+            case MMAP -> new CachedUserStore(new MappedUserStore(Paths.get(MAPPED_FILE)), Config.lazyHydration, Config.userCacheSize);
+            case SQL -> new CachedUserStore(new SqlUserStore(Paths.get(SQL_DATABASE)), Config.lazyHydration, Config.userCacheSize);
+            case JSON -> new JsonUserStore(LOAD_METRICS);
+        };
+    }
+    
+    private static void loadQuietly(UserStore fallback) {
+        try {
+            fallback.load();
         } catch (IOException e) {
             LOGGER.error("Erro ao carregar dados de usuários: ", e);
         }
     }
     
     /**
-     * Salva os dados dos usuários no arquivo JSON
+     * Salva os dados dos usuários imediatamente
      */
     public static void saveUserData() {
-        try (FileWriter writer = new FileWriter(DATA_FILE, StandardCharsets.UTF_8)) {
-            GSON.toJson(registeredUsers, writer);
+        try {
+            store.flush();
             LOGGER.debug("Dados de usuários salvos com sucesso");
         } catch (IOException e) {
             LOGGER.error("Erro ao salvar dados de usuários: ", e);
@@ -103,47 +199,193 @@ public class UserDataManager {
     }
     
     /**
-     * Registra um novo usuário
+     * Gravação usada pela thread de segundo plano (propaga erros para nova tentativa)
      */
-    public static boolean registerUser(String username, String password) {
-        if (registeredUsers.containsKey(username.toLowerCase())) {
-            return false; // Usuário já existe
+    private static void flushPending() {
+        try {
+            store.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        
-        String passwordHash = hashPassword(password);
-        UserData userData = new UserData(username, passwordHash);
-        registeredUsers.put(username.toLowerCase(), userData);
-        saveUserData();
-        
-        LOGGER.info("Usuário {} registrado com sucesso", username);
-        return true;
     }
     
     /**
-     * Autentica um usuário
+     * Inicia a gravação dos dados em segundo plano conforme a configuração
      */
-    public static boolean authenticateUser(String username, String password) {
-        UserData userData = registeredUsers.get(username.toLowerCase());
-        if (userData == null) {
-            return false; // Usuário não existe
+    public static void startBackgroundSaving() {
+        try {
+            store.start();
+        } catch (IOException e) {
+            LOGGER.error("Erro ao iniciar armazenamento de usuários: ", e);
         }
         
-        String passwordHash = hashPassword(password);
-        boolean isValid = userData.passwordHash.equals(passwordHash);
+        FLUSHER.start(Config.writeBehind,
+                      TimeUnit.SECONDS.toMillis(Config.flushIntervalSeconds),
+                      TimeUnit.SECONDS.toMillis(Config.maxDirtyAgeSeconds));
+        BACKUPS.start(TimeUnit.MINUTES.toMillis(Config.backupIntervalMinutes), Config.backupRetention);
+        if (!Config.replicationDirectory.isBlank()) {
+            REPLICATOR.start(Paths.get(Config.replicationDirectory), Config.replicationLogSizeKb * 1024L);
+        }
         
-        if (isValid) {
-            userData.lastLogin = System.currentTimeMillis();
-            saveUserData();
+        AUTH.start(Config.authWorkerThreads, Config.authQueueSize);
+        REGISTRATIONS.start();
+        // A calibração mede o PBKDF2 em uma thread de autenticação, sem atrasar a inicialização
+        AUTH.execute(() -> PasswordHasher.configure(Config.kdfIterations, Config.kdfTargetMillis));
+    }
+    
+    /**
+     * Registra uma alteração já aplicada: agenda a gravação e a publica para a replicação
+     */
+    private static void changed(UserDataChange change) {
+        FLUSHER.markDirty();
+        REPLICATOR.publish(change);
+    }
+    
+    /**
+     * Grava as alterações pendentes e copia os arquivos do armazenamento para o backup
+     */
+    private static List<Path> stageBackup(Path directory) throws IOException {
+        FLUSHER.flushNow();
+        return store.copyPersistedFiles(directory);
+    }
+    
+    /**
+     * Para a gravação em segundo plano e grava as alterações pendentes
+     */
+    public static void shutdown() {
+        // Um carregamento ainda em andamento (ex.: falha ao abrir o mundo) termina antes de parar
+        awaitUserData();
+        synchronized (UserDataManager.class) {
+            preload = null;
+        }
+        BACKUPS.shutdown();
+        // Logins em andamento terminam antes da última gravação
+        AUTH.shutdown();
+        FLUSHER.shutdown();
+        REGISTRATIONS.stop();
+        REPLICATOR.shutdown();
+        store.stop();
+        LOGGER.info("Dados de usuários gravados no desligamento");
+    }
+    
+    /**
+     * Mantém a conta do jogador em memória enquanto ele estiver online
+     */
+    public static void pinUser(String username) {
+        store.pin(UserStore.key(username));
+    }
+    
+    /**
+     * Libera a conta do jogador quando ele sai
+     */
+    public static void unpinUser(String username) {
+        store.unpin(UserStore.key(username));
+    }
+    
+    /**
+     * Resultado de um registro
+     */
+    public enum Registration {
+        REGISTERED,
+        ALREADY_REGISTERED,
+        TOO_MANY_ACCOUNTS,
+        TOO_MANY_RECENT,
+        FAILED
+    }
+    
+    /**
+     * Registra um novo usuário vindo do IP dado. Os limites por IP são conferidos antes do hash,
+     * que é feito em uma thread de autenticação; o resultado falha com RejectedExecutionException
+     * se a fila estiver cheia.
+     */
+    public static CompletableFuture<Registration> registerUser(String username, String password, String ip) {
+        String key = UserStore.key(username);
+        switch (REGISTRATIONS.tryReserve(ip, username)) {
+            case TOO_MANY_ACCOUNTS -> {
+                return CompletableFuture.completedFuture(Registration.TOO_MANY_ACCOUNTS);
+            }
+            case TOO_MANY_RECENT -> {
+                return CompletableFuture.completedFuture(Registration.TOO_MANY_RECENT);
+            }
+            default -> {
+            }
         }
         
-        return isValid;
+        CompletableFuture<Registration> result = AUTH.submit(() -> {
+            UserStore current = store;
+            if (current.contains(key)) {
+                return Registration.ALREADY_REGISTERED;
+            }
+            
+            UserData userData = new UserData(username, PasswordHasher.hash(password));
+            try {
+                if (!current.register(key, userData)) {
+                    return Registration.ALREADY_REGISTERED;
+                }
+            } catch (IOException e) {
+                LOGGER.error("Erro ao registrar usuário {}: ", username, e);
+                return Registration.FAILED;
+            }
+            changed(UserDataChange.register(key, userData));
+            
+            LOGGER.info("Usuário {} registrado com sucesso", username);
+            return Registration.REGISTERED;
+        });
+        // Registro que não aconteceu (ou fila cheia) devolve a vaga do IP
+        result.whenComplete((registration, error) -> {
+            if (registration != Registration.REGISTERED) {
+                REGISTRATIONS.release(ip, username);
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Contas registradas a partir do IP (apenas registros feitos depois do índice existir)
+     */
+    public static List<String> getAccountsByIp(String ip) {
+        return REGISTRATIONS.accounts(ip);
+    }
+    
+    /**
+     * Autentica um usuário em uma thread de autenticação. Hashes antigos (SHA-256 ou custo
+     * menor que o atual) são refeitos com a senha recebida após a verificação.
+     */
+    public static CompletableFuture<Boolean> authenticateUser(String username, String password) {
+        String key = UserStore.key(username);
+        return AUTH.submit(() -> {
+            UserStore current = store;
+            String storedHash = current.passwordHash(key);
+            if (storedHash == null) {
+                return false; // Usuário não existe
+            }
+            
+            if (!PasswordHasher.verify(password, storedHash)) {
+                return false;
+            }
+            
+            long now = System.currentTimeMillis();
+            current.updateLastLogin(key, now);
+            changed(UserDataChange.login(key, now));
+            
+            if (PasswordHasher.needsRehash(storedHash)) {
+                String upgraded = PasswordHasher.hash(password);
+                // Não sobrescreve uma troca de senha feita durante o hash
+                if (storedHash.equals(current.passwordHash(key))) {
+                    current.updatePassword(key, upgraded);
+                    changed(UserDataChange.password(key, upgraded));
+                    LOGGER.info("Hash da senha de {} atualizado para {} iterações", username, PasswordHasher.iterations());
+                }
+            }
+            return true;
+        });
     }
     
     /**
      * Verifica se um usuário está registrado
      */
     public static boolean isUserRegistered(String username) {
-        return registeredUsers.containsKey(username.toLowerCase());
+        return store.contains(UserStore.key(username));
     }
     
     /**
@@ -151,6 +393,7 @@ public class UserDataManager {
      */
     public static void loginPlayer(ServerPlayer player) {
         loggedInPlayers.add(player.getUUID());
+        SessionManager.rememberLogin(player);
         LOGGER.info("Jogador {} fez login", player.getName().getString());
     }
     
@@ -169,6 +412,13 @@ public class UserDataManager {
         return loggedInPlayers.contains(player.getUUID());
     }
     
+    /**
+     * UUIDs dos jogadores logados no momento (visão somente leitura)
+     */
+    public static Set<UUID> getLoggedInPlayerIds() {
+        return Collections.unmodifiableSet(loggedInPlayers);
+    }
+    
     /**
      * Limpa todos os jogadores logados (usado quando o servidor reinicia)
      */
@@ -178,54 +428,47 @@ public class UserDataManager {
     }
     
     /**
-     * Gera hash SHA-256 da senha
+     * Resultado de uma troca de senha
      */
-    private static String hashPassword(String password) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(password.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            LOGGER.error("Erro ao gerar hash da senha: ", e);
-            return password; // Fallback inseguro, mas funcional
-        }
+    public enum PasswordChange {
+        CHANGED,
+        WRONG_PASSWORD,
+        FAILED
     }
     
     /**
-     * Altera a senha de um usuário
+     * Confere a senha atual e grava a nova em um único pedido na thread de autenticação
+     * (sem contar como login e com uma única alteração gravada)
      */
-    public static boolean changePassword(String username, String newPassword) {
-        UserData userData = registeredUsers.get(username.toLowerCase());
-        if (userData == null) {
-            return false; // Usuário não existe
-        }
-        
-        String newPasswordHash = hashPassword(newPassword);
-        userData.passwordHash = newPasswordHash;
-        saveUserData();
-        
-        LOGGER.info("Senha do usuário {} alterada com sucesso", username);
-        return true;
+    public static CompletableFuture<PasswordChange> changePassword(String username, String currentPassword, String newPassword) {
+        String key = UserStore.key(username);
+        return AUTH.submit(() -> {
+            UserStore current = store;
+            String storedHash = current.passwordHash(key);
+            if (storedHash == null) {
+                return PasswordChange.FAILED; // Usuário não existe
+            }
+            if (!PasswordHasher.verify(currentPassword, storedHash)) {
+                return PasswordChange.WRONG_PASSWORD;
+            }
+            
+            String newPasswordHash = PasswordHasher.hash(newPassword);
+            current.updatePassword(key, newPasswordHash);
+            changed(UserDataChange.password(key, newPasswordHash));
+            
+            LOGGER.info("Senha do usuário {} alterada com sucesso", username);
+            return PasswordChange.CHANGED;
+        });
     }
     
     /**
      * Salva a posição atual do jogador
      */
     public static void savePlayerPosition(ServerPlayer player) {
-        String username = player.getName().getString().toLowerCase();
-        UserData userData = registeredUsers.get(username);
+        String username = UserStore.key(player.getName().getString());
+        UserStore current = store;
         
-        if (userData != null) {
+        if (current.contains(username)) {
             String dimension = player.level().dimension().location().toString();
             PlayerPosition position = new PlayerPosition(
                 player.getX(),
@@ -236,8 +479,8 @@ public class UserDataManager {
                 dimension
             );
             
-            userData.lastPosition = position;
-            saveUserData();
+            current.updatePosition(username, position);
+            changed(UserDataChange.position(username, position));
             
             LOGGER.info("Posição salva para jogador {} em {}: {}, {}, {}", 
                        username, dimension, position.x, position.y, position.z);
@@ -248,7 +491,7 @@ public class UserDataManager {
      * Obtém a última posição salva do jogador
      */
     public static PlayerPosition getPlayerLastPosition(String username) {
-        UserData userData = registeredUsers.get(username.toLowerCase());
+        UserData userData = store.lookup(UserStore.key(username));
         return userData != null ? userData.lastPosition : null;
     }
     
@@ -256,7 +499,7 @@ public class UserDataManager {
      * Verifica se o jogador tem uma posição salva
      */
     public static boolean hasPlayerPosition(String username) {
-        UserData userData = registeredUsers.get(username.toLowerCase());
+        UserData userData = store.lookup(UserStore.key(username));
         return userData != null && userData.lastPosition != null;
     }
     
@@ -300,9 +543,21 @@ public class UserDataManager {
      * Obtém estatísticas dos usuários
      */
     public static Map<String, Object> getStats() {
+        UserStore current = store;
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalRegisteredUsers", registeredUsers.size());
+        stats.put("totalRegisteredUsers", current.count());
         stats.put("currentlyLoggedIn", loggedInPlayers.size());
+        LOAD_METRICS.appendStats(stats);
+        stats.put("loadWaitMillis", lastLoadWaitMillis);
+        FLUSHER.appendStats(stats, "userData");
+        BACKUPS.appendStats(stats);
+        REPLICATOR.appendStats(stats);
+        AUTH.appendStats(stats);
+        BypassHandshake.appendStats(stats);
+        SessionManager.appendStats(stats);
+        BreachedPasswordFilter.appendStats(stats);
+        REGISTRATIONS.appendStats(stats);
+        current.appendStats(stats);
         return stats;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,323 @@
+package com.aliloginmod;
+
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Replica as alterações das contas para um diretório de reserva (outro disco ou montagem NFS).
+ *
+ * Cada alteração publicada recebe um número de sequência e entra em uma fila; uma thread própria
+ * anexa os registros ao diário do diretório de reserva. O diretório tem o mesmo layout do
+ * armazenamento JSON (snapshot + diário): para assumir, basta copiar os dois arquivos para o
+ * diretório do servidor. O arquivo {@value #STATE_FILE} guarda a última sequência aplicada e
+ * a replicação continua dela após reiniciar. Quando a reserva pode ter divergido (servidor
+ * caiu sem esvaziar a fila, fila transbordou) ou o diário dela cresce demais, a reserva é
+ * recriada a partir das contas atuais.
+ */
+public class UserDataReplicator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserDataReplicator.class);
+    private static final Gson GSON = UserDataAdapters.createGson(false);
+
+    private static final String SNAPSHOT_FILE = "aliloginmod_users.json";
+    private static final String JOURNAL_FILE = "aliloginmod_users.journal";
+    private static final String STATE_FILE = "replication.json";
+
+    // Frequência com que a thread envia a fila para a reserva
+    private static final long TICK_MILLIS = 250;
+    // Alterações aguardando envio; acima disso a reserva é recriada em vez de crescer a fila
+    private static final int MAX_QUEUE = 100_000;
+
+    private record Entry(long sequence, UserDataChange change, long publishedAt) {
+    }
+
+    /**
+     * Estado gravado na reserva: última sequência aplicada e se o servidor principal está rodando
+     */
+    private record State(long sequence, boolean primaryRunning, int accounts) {
+    }
+
+    private final Supplier<UserStore> source;
+    private final Object publishLock = new Object();
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>(MAX_QUEUE);
+
+    // null enquanto a replicação estiver desativada
+    private volatile Path directory;
+    private ScheduledExecutorService executor;
+    private UserDataJournal journal;
+    private long reseedJournalBytes;
+    private volatile boolean needsSeed;
+    private boolean failing;
+
+    private volatile long publishedSequence;
+    private volatile long appliedSequence;
+    // Última sequência anexada ao diário da reserva (usada apenas pela thread de replicação)
+    private long appendedSequence;
+    // Publicação do registro mais antigo anexado e ainda não gravado na reserva
+    private volatile long oldestUnsyncedAt;
+
+    // Métricas
+    private final AtomicLong seeds = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastSeedNanos;
+    private volatile long lastBatchNanos;
+    private volatile long lastBatchRecords;
+
+    public UserDataReplicator(Supplier<UserStore> source) {
+        this.source = source;
+    }
+
+    /**
+     * Inicia a replicação para o diretório (idempotente). Continua da última sequência aplicada
+     * se o servidor foi desligado normalmente; caso contrário recria a reserva.
+     */
+    public synchronized void start(Path target, long reseedJournalBytes) {
+        if (executor != null) {
+            return;
+        }
+        try {
+            Files.createDirectories(target);
+            State state = readState(target);
+            int accounts = source.get().count();
+
+            long sequence = state != null ? state.sequence() : 0;
+            publishedSequence = sequence;
+            appliedSequence = sequence;
+            appendedSequence = sequence;
+
+            if (state == null || !Files.isRegularFile(target.resolve(SNAPSHOT_FILE))) {
+                LOGGER.info("Reserva {} vazia, criando a partir das contas atuais", target);
+                needsSeed = true;
+            } else if (state.primaryRunning() || state.accounts() != accounts) {
+                LOGGER.warn("Reserva {} pode ter divergido (desligamento anterior incompleto), recriando", target);
+                needsSeed = true;
+            } else {
+                LOGGER.info("Replicação para {} continuando da sequência {}", target, sequence);
+            }
+
+            journal = new UserDataJournal(target.resolve(JOURNAL_FILE));
+            journal.open();
+            this.reseedJournalBytes = reseedJournalBytes;
+            directory = target;
+            writeState(true, accounts);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Erro ao iniciar replicação para {}: ", target, e);
+            directory = null;
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "aliloginmod-replicator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publica uma alteração já aplicada ao armazenamento principal
+     */
+    public void publish(UserDataChange change) {
+        if (directory == null) {
+            return;
+        }
+        synchronized (publishLock) {
+            long sequence = publishedSequence + 1;
+            if (!queue.offer(new Entry(sequence, change, System.currentTimeMillis()))) {
+                // Reserva inacessível há muito tempo: será recriada quando voltar
+                overflows.incrementAndGet();
+                needsSeed = true;
+            }
+            publishedSequence = sequence;
+        }
+    }
+
+    /**
+     * Para a replicação, envia o que estiver na fila e marca o desligamento normal na reserva
+     */
+    public synchronized void shutdown() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+
+        try {
+            replicate();
+            writeState(false, source.get().count());
+            LOGGER.info("Replicação encerrada na sequência {}", appliedSequence);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Erro ao enviar alterações pendentes para a reserva (ela será recriada na próxima inicialização): ", e);
+        }
+        journal.close();
+        directory = null;
+        queue.clear();
+    }
+
+    private void tick() {
+        try {
+            replicate();
+            if (failing) {
+                failing = false;
+                LOGGER.info("Replicação para {} restabelecida na sequência {}", directory, appliedSequence);
+            }
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            // Registra apenas a primeira falha seguida para não inundar o log com a reserva fora do ar
+            if (!failing) {
+                failing = true;
+                LOGGER.error("Erro ao replicar para {}, tentando novamente: ", directory, e);
+            }
+        }
+    }
+
+    /**
+     * Anexa os registros da fila ao diário da reserva e os grava. Em caso de erro o diário
+     * mantém o lote para a próxima tentativa.
+     */
+    private void replicate() throws IOException {
+        if (needsSeed) {
+            seed();
+        }
+
+        List<Entry> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        for (Entry entry : batch) {
+            // Alterações anteriores à semente já estão no snapshot da reserva
+            if (entry.sequence() <= appendedSequence) {
+                continue;
+            }
+            if (oldestUnsyncedAt == 0) {
+                oldestUnsyncedAt = entry.publishedAt();
+            }
+            journal.append(entry.change());
+            appendedSequence = entry.sequence();
+        }
+        if (appendedSequence == appliedSequence) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        journal.sync();
+        lastBatchRecords = appendedSequence - appliedSequence;
+        appliedSequence = appendedSequence;
+        oldestUnsyncedAt = 0;
+        // Após uma queda a numeração continua daqui, sem repetir sequências já vistas pela reserva
+        writeState(true, source.get().count());
+        lastBatchNanos = System.nanoTime() - start;
+
+        if (journal.size() >= reseedJournalBytes) {
+            needsSeed = true;
+        }
+    }
+
+    /**
+     * Recria a reserva: snapshot com todas as contas atuais e diário vazio. Alterações com
+     * sequência até a base já estão nas contas copiadas; as posteriores podem estar ou não,
+     * mas reaplicá-las em ordem converge para o mesmo estado.
+     */
+    private void seed() throws IOException {
+        long start = System.nanoTime();
+        long base;
+        synchronized (publishLock) {
+            queue.clear();
+            needsSeed = false;
+            base = publishedSequence;
+        }
+
+        try {
+            Map<String, UserDataManager.UserData> accounts = new HashMap<>();
+            source.get().forEach(accounts::put);
+            journal.compact(() -> AtomicSnapshotWriter.write(directory.resolve(SNAPSHOT_FILE), out -> {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                GSON.toJson(accounts, writer);
+                writer.flush();
+            }));
+            appendedSequence = base;
+            appliedSequence = base;
+            oldestUnsyncedAt = 0;
+            writeState(true, accounts.size());
+
+            lastSeedNanos = System.nanoTime() - start;
+            seeds.incrementAndGet();
+            LOGGER.info("Reserva {} recriada com {} contas (sequência {}) em {} ms",
+                       directory, accounts.size(), base, lastSeedNanos / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            needsSeed = true;
+            throw e;
+        }
+    }
+
+    private static State readState(Path target) {
+        Path file = target.resolve(STATE_FILE);
+        if (!AtomicSnapshotWriter.anyGenerationExists(file)) {
+            return null;
+        }
+        return AtomicSnapshotWriter.readNewestValid(file, in -> {
+            Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+            return GSON.fromJson(reader, State.class);
+        });
+    }
+
+    private void writeState(boolean primaryRunning, int accounts) throws IOException {
+        State state = new State(appliedSequence, primaryRunning, accounts);
+        AtomicSnapshotWriter.write(directory.resolve(STATE_FILE), out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            GSON.toJson(state, writer);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Adiciona as métricas de replicação ao mapa de estatísticas
+     */
+    public void appendStats(Map<String, Object> stats) {
+        long published = publishedSequence;
+        long applied = appliedSequence;
+        long oldest = oldestUnsyncedAt;
+        if (oldest == 0) {
+            Entry head = queue.peek();
+            oldest = head != null ? head.publishedAt() : 0;
+        }
+
+        stats.put("replicationEnabled", directory != null);
+        stats.put("replicationPublishedSequence", published);
+        stats.put("replicationAppliedSequence", applied);
+        stats.put("replicationLagRecords", Math.max(0, published - applied));
+        stats.put("replicationLagMillis", oldest == 0 ? 0 : System.currentTimeMillis() - oldest);
+        stats.put("replicationSeeds", seeds.get());
+        stats.put("replicationLastSeedMillis", lastSeedNanos / 1_000_000.0);
+        stats.put("replicationLastBatchMillis", lastBatchNanos / 1_000_000.0);
+        stats.put("replicationLastBatchRecords", lastBatchRecords);
+        stats.put("replicationOverflows", overflows.get());
+        stats.put("replicationFailures", failures.get());
+    }
+}
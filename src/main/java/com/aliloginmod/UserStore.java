@@ -0,0 +1,102 @@
+package com.aliloginmod;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Armazenamento das contas registradas, indexadas pelo nome em minúsculas.
+ * O {@link UserDataManager} cuida do hash das senhas e das sessões; a implementação
+ * apenas guarda e devolve os dados e decide como gravá-los.
+ */
+public interface UserStore {
+    /**
+     * Chave de uma conta: o nome em minúsculas, independente do idioma do sistema
+     */
+    static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Abre o armazenamento e prepara o que for necessário para atender consultas
+     */
+    void load() throws IOException;
+
+    /**
+     * Grava uma nova conta. Retorna false se o nome já estiver registrado.
+     */
+    boolean register(String key, UserDataManager.UserData data) throws IOException;
+
+    /**
+     * Obtém a conta completa. Retorna null se não existir.
+     */
+    UserDataManager.UserData lookup(String key);
+
+    boolean contains(String key);
+
+    /**
+     * Obtém apenas o hash da senha para autenticação. Retorna null se a conta não existir.
+     */
+    String passwordHash(String key);
+
+    void updateLastLogin(String key, long lastLogin);
+
+    void updatePassword(String key, String passwordHash);
+
+    void updatePosition(String key, UserDataManager.PlayerPosition position);
+
+    /**
+     * Percorre todas as contas
+     */
+    void forEach(BiConsumer<String, UserDataManager.UserData> consumer);
+
+    /**
+     * Percorre apenas as chaves das contas; implementações com índice evitam decodificar as contas
+     */
+    default void forEachKey(Consumer<String> consumer) {
+        forEach((key, data) -> consumer.accept(key));
+    }
+
+    int count();
+
+    /**
+     * Grava as alterações pendentes (chamado pela thread de gravação em segundo plano)
+     */
+    void flush() throws IOException;
+
+    /**
+     * Copia para o diretório os arquivos que compõem os dados gravados, todos no mesmo instante
+     * (usado pelos backups). Retorna os arquivos criados no diretório.
+     */
+    List<Path> copyPersistedFiles(Path directory) throws IOException;
+
+    /**
+     * Inicia as tarefas de segundo plano do armazenamento (servidor iniciando)
+     */
+    default void start() throws IOException {
+    }
+
+    /**
+     * Grava o que estiver pendente e para as tarefas de segundo plano (servidor parando)
+     */
+    default void stop() {
+    }
+
+    /**
+     * Mantém a conta em memória enquanto o jogador estiver online
+     */
+    default void pin(String key) {
+    }
+
+    default void unpin(String key) {
+    }
+
+    /**
+     * Adiciona as métricas do armazenamento ao mapa de estatísticas
+     */
+    void appendStats(Map<String, Object> stats);
+}
@@ -0,0 +1,205 @@
+package com.aliloginmod;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Agrupa várias alterações em uma única gravação em disco feita em segundo plano.
+ *
+ * Cada alteração apenas marca os dados como "sujos". Uma thread dedicada grava quando
+ * não há novas alterações há {@code flushInterval} ou quando a alteração mais antiga
+ * ainda não gravada passa de {@code maxDirtyAge}. Com o agrupamento desativado, cada
+ * alteração agenda uma gravação imediata, mas ainda fora da thread do servidor.
+ */
+public class WriteBehindFlusher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindFlusher.class);
+
+    // Frequência com que a thread verifica se deve gravar
+    private static final long TICK_MILLIS = 250;
+
+    private final String name;
+    private final Runnable flushAction;
+    private final Object flushLock = new Object();
+
+    private volatile ScheduledExecutorService executor;
+    private volatile boolean coalesce;
+    private volatile long flushIntervalMillis;
+    private volatile long maxDirtyAgeMillis;
+
+    // Estado de alterações pendentes
+    private final AtomicLong pendingMutations = new AtomicLong();
+    private final AtomicLong dirtySince = new AtomicLong();
+    private volatile long lastMutationAt;
+    private final AtomicLong totalMutations = new AtomicLong();
+
+    // Métricas
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong totalCoalesced = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+    private volatile long lastCoalesced;
+
+    public WriteBehindFlusher(String name, Runnable flushAction) {
+        this.name = name;
+        this.flushAction = flushAction;
+    }
+
+    /**
+     * Inicia a gravação em segundo plano (idempotente)
+     */
+    public synchronized void start(boolean writeBehind, long flushIntervalMillis, long maxDirtyAgeMillis) {
+        this.coalesce = writeBehind;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxDirtyAgeMillis = Math.max(flushIntervalMillis, maxDirtyAgeMillis);
+
+        if (executor != null) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        LOGGER.info("Gravação em segundo plano '{}' iniciada (intervalo {} ms, idade máxima {} ms)",
+                   name, flushIntervalMillis, this.maxDirtyAgeMillis);
+    }
+
+    /**
+     * Registra uma alteração. Sem agrupamento, agenda a gravação imediatamente.
+     */
+    public void markDirty() {
+        long now = System.currentTimeMillis();
+        lastMutationAt = now;
+        // Conta antes de armar o início, na ordem inversa de flushNow
+        pendingMutations.incrementAndGet();
+        dirtySince.compareAndSet(0, now);
+        totalMutations.incrementAndGet();
+
+        if (!coalesce) {
+            ScheduledExecutorService current = executor;
+            if (current == null) {
+                flushNow();
+                return;
+            }
+            try {
+                current.execute(this::flushNow);
+            } catch (RejectedExecutionException e) {
+                flushNow();
+            }
+        }
+    }
+
+    /**
+     * Total de alterações registradas desde o início (usado para saber se algo mudou)
+     */
+    public long mutationCount() {
+        return totalMutations.get();
+    }
+
+    /**
+     * Verifica se existem alterações ainda não gravadas
+     */
+    public boolean isDirty() {
+        return pendingMutations.get() > 0;
+    }
+
+    /**
+     * Grava imediatamente as alterações pendentes na thread atual
+     */
+    public void flushNow() {
+        synchronized (flushLock) {
+            // Pega as pendentes antes de zerar o início: um markDirty que chegue entre os dois
+            // continua pendente e o início é rearmado, para maxDirtyAgeSeconds valer para ele
+            long coalesced = pendingMutations.getAndSet(0);
+            dirtySince.set(0);
+            if (pendingMutations.get() > 0) {
+                dirtySince.compareAndSet(0, System.currentTimeMillis());
+            }
+            if (coalesced == 0) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                flushAction.run();
+            } catch (Exception e) {
+                // Mantém as alterações como pendentes para a próxima tentativa
+                pendingMutations.addAndGet(coalesced);
+                dirtySince.compareAndSet(0, System.currentTimeMillis());
+                LOGGER.error("Erro na gravação em segundo plano '{}': ", name, e);
+                return;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            flushCount.incrementAndGet();
+            totalFlushNanos.addAndGet(elapsed);
+            totalCoalesced.addAndGet(coalesced);
+            lastFlushNanos = elapsed;
+            lastCoalesced = coalesced;
+            if (elapsed > maxFlushNanos) {
+                maxFlushNanos = elapsed;
+            }
+            LOGGER.debug("Gravação '{}' concluída: {} alterações em {} ms", name, coalesced, elapsed / 1_000_000.0);
+        }
+    }
+
+    /**
+     * Para a thread de gravação e grava o que estiver pendente. Alterações feitas depois
+     * (ex.: jogadores saindo após o servidor parar) são gravadas na hora, na thread que as fez.
+     */
+    public synchronized void shutdown() {
+        coalesce = false;
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+        flushNow();
+    }
+
+    /**
+     * Adiciona as métricas de gravação ao mapa de estatísticas
+     */
+    public void appendStats(Map<String, Object> stats, String prefix) {
+        long flushes = flushCount.get();
+        stats.put(prefix + "Flushes", flushes);
+        stats.put(prefix + "PendingMutations", pendingMutations.get());
+        stats.put(prefix + "LastFlushMillis", lastFlushNanos / 1_000_000.0);
+        stats.put(prefix + "MaxFlushMillis", maxFlushNanos / 1_000_000.0);
+        stats.put(prefix + "AvgFlushMillis", flushes == 0 ? 0.0 : totalFlushNanos.get() / 1_000_000.0 / flushes);
+        stats.put(prefix + "LastFlushCoalesced", lastCoalesced);
+        stats.put(prefix + "AvgFlushCoalesced", flushes == 0 ? 0.0 : (double) totalCoalesced.get() / flushes);
+    }
+
+    private void tick() {
+        if (!isDirty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long firstDirty = dirtySince.get();
+        boolean quiet = now - lastMutationAt >= flushIntervalMillis;
+        boolean tooOld = firstDirty != 0 && now - firstDirty >= maxDirtyAgeMillis;
+
+        if (quiet || tooOld) {
+            flushNow();
+        }
+    }
+}